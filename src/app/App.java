@@ -1,25 +1,54 @@
 package app;
 
 import game.GameNetwork;
+import network.Connection;
 import ui.GameFrame;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Main client application entry point for Pac-Man multiplayer game.
  * Handles network initialization and GUI startup.
+ *
+ * Usage: App [host[:port] | shm[:directory][:port]] [--virtual-threads] [--deflate]
+ * "shm" uses shared memory to a server on this machine, e.g. shm, shm:1234,
+ * shm:/some/dir or shm:/some/dir:1234; the directory defaults to /dev/shm.
+ * --deflate asks the server to compress the lines it sends.
  */
 public class App {
     // Network configuration constants
     private static final String SERVER_ADDRESS = "localhost";
     private static final int SERVER_PORT = 1234;
+    private static final String VIRTUAL_THREADS_FLAG = "--virtual-threads";
+    private static final String DEFLATE_FLAG = "--deflate";
 
     public static void main(String[] args) {
         try {
+            // 0. Warm up sprites while the connection is established
+            GameFrame.preloadAssets();
+
             // 1. Initialize network communication handler
-            GameNetwork gameNetwork = new GameNetwork();
+            boolean virtualThreads = Arrays.asList(args).contains(VIRTUAL_THREADS_FLAG);
+            GameNetwork gameNetwork = new GameNetwork(virtualThreads);
+            gameNetwork.setCompression(Arrays.asList(args).contains(DEFLATE_FLAG));
 
-            // 2. Establish connection to game server
-            connectToServer(gameNetwork);
+            // 2. Establish connection to game server (or a proxy in front of it)
+            String address = SERVER_ADDRESS;
+            int port = SERVER_PORT;
+            for (String arg : args) {
+                if (arg.startsWith("--")) continue;
+                int colon = arg.lastIndexOf(':');
+                if (isSharedMemory(arg)) {
+                    // shm[:directory][:port]; the directory goes to the transport as part of the address
+                    boolean hasPort = colon >= 0 && isPort(arg.substring(colon + 1));
+                    address = hasPort ? arg.substring(0, colon) : arg;
+                    port = hasPort ? Integer.parseInt(arg.substring(colon + 1)) : SERVER_PORT;
+                } else {
+                    address = (colon < 0) ? arg : arg.substring(0, colon);
+                    port = (colon < 0) ? SERVER_PORT : Integer.parseInt(arg.substring(colon + 1));
+                }
+            }
+            connectToServer(gameNetwork, address, port);
 
             // 3. Launch game window with network capabilities
             new GameFrame("Pac-Man Multiplayer", gameNetwork);
@@ -30,16 +59,33 @@ public class App {
         }
     }
 
+    /**
+     * @return true if the target selects the shared-memory transport (see {@link Connection#connect})
+     */
+    private static boolean isSharedMemory(String target) {
+        return target.equals(Connection.SHARED_MEMORY_SCHEME)
+                || target.startsWith(Connection.SHARED_MEMORY_SCHEME + ":");
+    }
+
+    /**
+     * @return true if the text is a port number rather than part of a directory
+     */
+    private static boolean isPort(String text) {
+        return !text.isEmpty() && text.length() <= 5 && text.chars().allMatch(Character::isDigit);
+    }
+
     /**
      * Establishes connection to the game server
      * @param network Game network controller instance
+     * @param address Server host name or IP
+     * @param port Server port
      * @throws IOException if connection fails due to network issues
      */
-    private static void connectToServer(GameNetwork network) throws IOException {
+    private static void connectToServer(GameNetwork network, String address, int port) throws IOException {
         try {
-            network.connectToServer(SERVER_ADDRESS, SERVER_PORT);
+            network.connectToServer(address, port);
             System.out.println("Connection established with game server at "
-                    + SERVER_ADDRESS + ":" + SERVER_PORT);
+                    + address + ":" + port);
         } catch (IOException ex) {
             throw new IOException("Server connection failed: " + ex.getMessage()
                     + " - Check if server is running and accessible");
@@ -0,0 +1,29 @@
+package app;
+
+import network.RoomHost;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Backend process of a server cluster: hosts game rooms on behalf of a gateway.
+ *
+ * Usage: BackendApp [controlPort] [--virtual-threads]
+ */
+public class BackendApp {
+    private static final int DEFAULT_CONTROL_PORT = 7001;
+    private static final String VIRTUAL_THREADS_FLAG = "--virtual-threads";
+
+    public static void main(String[] args) {
+        int controlPort = (args.length > 0 && !args[0].startsWith("--"))
+                ? Integer.parseInt(args[0])
+                : DEFAULT_CONTROL_PORT;
+        boolean virtualThreads = Arrays.asList(args).contains(VIRTUAL_THREADS_FLAG);
+        try {
+            new RoomHost(controlPort, virtualThreads).start();
+        } catch (IOException e) {
+            System.err.println("Backend failed to start: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
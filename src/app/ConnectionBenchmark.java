@@ -0,0 +1,119 @@
+package app;
+
+import network.Protocol;
+import network.Server;
+import network.Threads;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares how far the server scales with platform threads versus virtual
+ * threads. Opens the given number of connections against an in-process server
+ * in each mode and reports connect time, platform threads, heap and
+ * broadcast fan-out latency.
+ *
+ * Usage: ConnectionBenchmark [connections] [broadcastRounds]
+ */
+public class ConnectionBenchmark {
+    private static final int DEFAULT_CONNECTIONS = 2000;
+    private static final int DEFAULT_ROUNDS = 20;
+
+    public static void main(String[] args) throws Exception {
+        int connections = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_CONNECTIONS;
+        int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : DEFAULT_ROUNDS;
+
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // Mute per-player logs
+        console.printf("%-9s %8s %11s %9s %9s %14s%n",
+                "mode", "clients", "connect ms", "threads", "heap MB", "fan-out ms avg");
+        for (boolean virtualThreads : new boolean[] {false, true}) {
+            if (virtualThreads && !Threads.virtualAvailable()) {
+                console.println("virtual   skipped: needs Java 21 or later");
+                continue;
+            }
+            try {
+                Result result = run(virtualThreads, connections, rounds);
+                console.printf("%-9s %8d %11d %9d %9d %14.2f%n",
+                        virtualThreads ? "virtual" : "platform", result.connected, result.connectMs,
+                        result.threads, result.heapMb, result.fanOutMs);
+            } catch (IOException | OutOfMemoryError e) {
+                console.println((virtualThreads ? "virtual" : "platform")
+                        + " failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private record Result(int connected, long connectMs, int threads, long heapMb, double fanOutMs) {}
+
+    private static Result run(boolean virtualThreads, int connections, int rounds) throws Exception {
+        Server server = new Server(virtualThreads);
+        server.start(0);
+        List<Socket> sockets = new ArrayList<>(connections);
+        List<BufferedReader> readers = new ArrayList<>(connections);
+        try {
+            long start = System.nanoTime();
+            for (int i = 0; i < connections; i++) {
+                Socket socket = new Socket("localhost", server.getPort());
+                BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                send(socket, "HELLO");
+                if (reader.readLine() == null) throw new IOException("Server closed during handshake");
+                readSnapshot(socket, reader); // Current snapshot
+                sockets.add(socket);
+                readers.add(reader);
+            }
+            long connectMs = (System.nanoTime() - start) / 1_000_000;
+
+            ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+            System.gc();
+            long heapMb = memory.getHeapMemoryUsage().getUsed() / (1024 * 1024);
+
+            // One client moves; time until every client has the snapshot
+            long fanOutNanos = 0;
+            for (int round = 0; round < rounds; round++) {
+                long sent = System.nanoTime();
+                send(sockets.get(0), "bench," + round + ",0,R,0,3,false");
+                for (int i = 0; i < readers.size(); i++) {
+                    readSnapshot(sockets.get(i), readers.get(i));
+                }
+                fanOutNanos += System.nanoTime() - sent;
+            }
+            return new Result(sockets.size(), connectMs, threads.getThreadCount(), heapMb,
+                    fanOutNanos / 1_000_000.0 / rounds);
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+            server.shutdown();
+        }
+    }
+
+    /**
+     * Reads up to the next snapshot, answering heartbeats and skipping other
+     * control lines, so long runs are not reaped as idle
+     * @throws IOException if the server closed the connection
+     */
+    private static String readSnapshot(Socket socket, BufferedReader reader) throws IOException {
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.equals(Protocol.PING)) {
+                send(socket, Protocol.PONG);
+            } else if (line.contains(Protocol.SECTION_SEPARATOR)) {
+                return line;
+            }
+        }
+        throw new IOException("Server closed a benchmark connection");
+    }
+
+    private static void send(Socket socket, String line) throws IOException {
+        OutputStream out = socket.getOutputStream();
+        out.write((line + "\n").getBytes());
+        out.flush();
+    }
+}
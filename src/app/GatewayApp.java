@@ -0,0 +1,68 @@
+package app;
+
+import network.Gateway;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cluster gateway: game clients connect here and are routed to backend rooms.
+ * Lines typed on standard input are admin commands (type "help").
+ *
+ * Usage: GatewayApp [publicPort] [backendHost:controlPort,...]
+ * e.g. start BackendApp 7001 and BackendApp 7002, then GatewayApp 1234 localhost:7001,localhost:7002
+ */
+public class GatewayApp {
+    private static final int DEFAULT_PORT = 1234;
+    private static final String DEFAULT_BACKENDS = "localhost:7001,localhost:7002";
+
+    public static void main(String[] args) {
+        int port = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        List<InetSocketAddress> backends = new ArrayList<>();
+        for (String backend : ((args.length > 1) ? args[1] : DEFAULT_BACKENDS).split(",")) {
+            int colon = backend.lastIndexOf(':');
+            backends.add(new InetSocketAddress(backend.substring(0, colon),
+                    Integer.parseInt(backend.substring(colon + 1))));
+        }
+
+        try {
+            Gateway gateway = new Gateway(port, backends);
+            gateway.start();
+            runAdminConsole(gateway);
+            while (true) {
+                Thread.sleep(1000); // No console, keep running
+            }
+        } catch (IOException e) {
+            System.err.println("Gateway failed: " + e.getMessage());
+            System.exit(1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads admin commands from standard input until it is closed
+     */
+    private static void runAdminConsole(Gateway gateway) throws IOException {
+        BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = console.readLine()) != null) {
+            String[] command = line.trim().split("\\s+", 2);
+            switch (command[0]) {
+                case "status" -> System.out.print(gateway.status());
+                case "drain" -> System.out.println((command.length > 1) ? gateway.drain(command[1]) : "drain host:port");
+                case "undrain" -> System.out.println((command.length > 1) ? gateway.undrain(command[1]) : "undrain host:port");
+                case "quit" -> {
+                    gateway.shutdown();
+                    System.exit(0);
+                }
+                case "" -> {}
+                default -> System.out.println("Commands: status, drain host:port, undrain host:port, quit");
+            }
+        }
+    }
+}
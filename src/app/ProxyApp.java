@@ -0,0 +1,41 @@
+package app;
+
+import network.ConditionsProxy;
+
+import java.io.IOException;
+
+/**
+ * Runs the network-conditions proxy between game clients and the server.
+ * Point the client at the proxy port (App localhost:1235) to play over the
+ * simulated link.
+ *
+ * Usage: ProxyApp [listenPort] [serverHost:port] [script] [seed]
+ * where script is e.g. "mobile" or "broadband:20,lossy:10,satellite:10".
+ * Built-in profiles: lan, broadband, mobile, lossy, satellite; custom
+ * profiles are written latencyMs/jitterMs/bytesPerSecond/reorder/loss.
+ */
+public class ProxyApp {
+    private static final int DEFAULT_LISTEN_PORT = 1235;
+    private static final String DEFAULT_TARGET = "localhost:1234";
+    private static final int DEFAULT_SERVER_PORT = 1234;
+    private static final String DEFAULT_SCRIPT = "broadband";
+
+    public static void main(String[] args) {
+        int listenPort = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_LISTEN_PORT;
+        String target = (args.length > 1) ? args[1] : DEFAULT_TARGET;
+        String script = (args.length > 2) ? args[2] : DEFAULT_SCRIPT;
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : 42;
+
+        int colon = target.lastIndexOf(':');
+        String host = (colon < 0) ? target : target.substring(0, colon);
+        int port = (colon < 0) ? DEFAULT_SERVER_PORT : Integer.parseInt(target.substring(colon + 1));
+        try {
+            ConditionsProxy proxy = new ConditionsProxy(listenPort, host, port,
+                    ConditionsProxy.Stage.parseScript(script), seed);
+            proxy.start();
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Proxy failed: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
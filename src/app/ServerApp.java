@@ -2,30 +2,45 @@ package app;
 
 import network.Server;
 
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
 import java.net.InetAddress;
+import java.util.Arrays;
 
 /**
  * Server application entry point for Pac-Man multiplayer game.
  * Handles server initialization and client connections.
+ * Lines typed on standard input are admin commands (type "help").
  */
 
 public class ServerApp {
     // Network configuration constants
     private static final int SERVER_PORT = 1234;
+    private static final String VIRTUAL_THREADS_FLAG = "--virtual-threads";
+    private static final String LOCKSTEP_FLAG = "--lockstep";
+    private static final String SHARED_MEMORY_FLAG = "--shm"; // Also accept same-host clients over shared memory
+    private static final String NO_DEFLATE_FLAG = "--no-deflate"; // Decline client compression offers
 
     public static void main(String[] args) {
         try {
             // Initialize game server instance
-            Server server = new Server();
+            boolean virtualThreads = Arrays.asList(args).contains(VIRTUAL_THREADS_FLAG);
+            boolean lockstep = Arrays.asList(args).contains(LOCKSTEP_FLAG);
+            Server server = new Server(virtualThreads, lockstep);
+            server.setCompression(!Arrays.asList(args).contains(NO_DEFLATE_FLAG));
 
             // Start listening for client connections
             server.start(SERVER_PORT);
+            if (Arrays.asList(args).contains(SHARED_MEMORY_FLAG)) {
+                server.acceptSharedMemory(null);
+            }
 
             // Display server network information
             printServerInfo();
 
-            // Keep server running indefinitely
+            // Serve admin commands; keep running if there is no console
+            runAdminConsole(server);
             while(true) {
                 Thread.sleep(1000); // Prevent immediate exit
             }
@@ -50,6 +65,28 @@ public class ServerApp {
         System.out.println("Waiting for players to connect...");
     }
 
+    /**
+     * Reads admin commands from standard input until it is closed
+     */
+    private static void runAdminConsole(Server server) throws IOException {
+        BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+        String command;
+        while ((command = console.readLine()) != null) {
+            switch (command.trim()) {
+                case "latency" -> System.out.print(server.latencyReport());
+                case "inbound" -> System.out.print(server.inboundReport());
+                case "compression" -> System.out.print(server.compressionReport());
+                case "latency reset" -> {
+                    server.resetLatency();
+                    System.out.println("Latency histograms cleared");
+                }
+                case "quit" -> System.exit(0); // Shutdown hook stops the server
+                case "" -> {}
+                default -> System.out.println("Commands: latency, latency reset, inbound, compression, quit");
+            }
+        }
+    }
+
     /**
      * Handles server errors with consistent formatting
      */
@@ -0,0 +1,52 @@
+package app;
+
+import game.BatchSimulator;
+
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * Headless batch runner for balance tuning and regression checks.
+ * Plays the given number of matches on all cores and prints throughput
+ * together with score and survival statistics.
+ *
+ * Usage: SimulationApp [matches] [random|scripted] [threads] [seed]
+ */
+public class SimulationApp {
+    private static final int DEFAULT_MATCHES = 1000;
+    private static final long MAX_TICKS = 12_000;     // 10 minutes of game time per match
+    private static final double TURN_CHANCE = 0.1;    // Random policy turns about twice a second
+    private static final String SCRIPT = "LURDRULD";  // Scripted policy route
+    private static final int TICKS_PER_MOVE = 15;
+
+    public static void main(String[] args) {
+        int matches = (args.length > 0) ? Integer.parseInt(args[0]) : DEFAULT_MATCHES;
+        String policyName = (args.length > 1) ? args[1] : "random";
+        int threads = (args.length > 2) ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long seed = (args.length > 3) ? Long.parseLong(args[3]) : 1;
+
+        BatchSimulator.InputPolicy policy = switch (policyName) {
+            case "random" -> BatchSimulator.InputPolicy.random(TURN_CHANCE);
+            case "scripted" -> BatchSimulator.InputPolicy.scripted(SCRIPT, TICKS_PER_MOVE);
+            default -> throw new IllegalArgumentException("Unknown policy: " + policyName);
+        };
+
+        BatchSimulator simulator = new BatchSimulator(policy, MAX_TICKS);
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            long start = System.nanoTime();
+            BatchSimulator.Stats stats = simulator.run(pool, matches, seed);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            System.out.printf("%d %s matches on %d threads in %.2f s%n", stats.getMatches(), policyName, threads, seconds);
+            System.out.printf("  throughput: %.0f matches/s, %.0f ticks/s%n",
+                    stats.getMatches() / seconds, stats.getTotalTicks() / seconds);
+            System.out.printf("  score:      mean %.1f, min %d, max %d%n",
+                    stats.getMeanScore(), stats.getMinScore(), stats.getMaxScore());
+            System.out.printf("  survival:   mean %.1f s, %d alive at the %d s limit, %d levels cleared%n",
+                    stats.getMeanSurvivalSeconds(), stats.getSurvived(),
+                    MAX_TICKS * BatchSimulator.TICK_MS / 1000, stats.getLevelsCleared());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package game;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs many independent matches of the game rules without rendering or timers.
+ * Each match is a single-player {@link GameWorld} stepped as fast as the CPU allows
+ * until game over or a tick limit. Matches are split across cores with fork/join
+ * and their results are merged into one {@link Stats}.
+ */
+public class BatchSimulator {
+    private static final int TILE_SIZE = 32;         // Same geometry as the game panel
+    private static final int MATCHES_PER_TASK = 8;   // Below this a task runs its matches itself
+    public static final long TICK_MS = 50;           // Game loop period, used to report survival time
+
+    /**
+     * Decides the input of the simulated player each tick
+     */
+    public interface InputPolicy {
+        /**
+         * @param world World being simulated
+         * @param player Simulated player
+         * @param tick Ticks simulated so far
+         * @param random Generator seeded per match
+         * @return Direction to steer (U D L R), or 0 to keep going
+         */
+        char decide(GameWorld world, GameWorld.Player player, long tick, Random random);
+
+        /**
+         * Turns in a random direction with the given chance each tick
+         */
+        static InputPolicy random(double turnChance) {
+            return (world, player, tick, random) ->
+                    (random.nextDouble() < turnChance) ? world.directions[random.nextInt(4)] : 0;
+        }
+
+        /**
+         * Repeats a fixed sequence of directions, one every ticksPerMove ticks
+         * @param script Directions such as "LURD"
+         */
+        static InputPolicy scripted(String script, int ticksPerMove) {
+            return (world, player, tick, random) ->
+                    (tick % ticksPerMove == 0) ? script.charAt((int) (tick / ticksPerMove % script.length())) : 0;
+        }
+    }
+
+    /**
+     * Aggregate outcome of a set of matches
+     */
+    public static final class Stats {
+        private int matches;
+        private int survived;      // Still alive at the tick limit
+        private long totalScore;
+        private int minScore = Integer.MAX_VALUE;
+        private int maxScore = Integer.MIN_VALUE;
+        private long totalTicks;
+        private long levelsCleared;
+
+        private void record(int score, long ticks, boolean gameOver, int levels) {
+            matches++;
+            if (!gameOver) survived++;
+            totalScore += score;
+            minScore = Math.min(minScore, score);
+            maxScore = Math.max(maxScore, score);
+            totalTicks += ticks;
+            levelsCleared += levels;
+        }
+
+        private Stats merge(Stats other) {
+            matches += other.matches;
+            survived += other.survived;
+            totalScore += other.totalScore;
+            minScore = Math.min(minScore, other.minScore);
+            maxScore = Math.max(maxScore, other.maxScore);
+            totalTicks += other.totalTicks;
+            levelsCleared += other.levelsCleared;
+            return this;
+        }
+
+        public int getMatches() {
+            return matches;
+        }
+
+        public int getSurvived() {
+            return survived;
+        }
+
+        public double getMeanScore() {
+            return (matches == 0) ? 0 : (double) totalScore / matches;
+        }
+
+        public int getMinScore() {
+            return (matches == 0) ? 0 : minScore;
+        }
+
+        public int getMaxScore() {
+            return (matches == 0) ? 0 : maxScore;
+        }
+
+        public long getTotalTicks() {
+            return totalTicks;
+        }
+
+        /**
+         * @return Average in-game survival time in seconds
+         */
+        public double getMeanSurvivalSeconds() {
+            return (matches == 0) ? 0 : (double) totalTicks / matches * TICK_MS / 1000.0;
+        }
+
+        public long getLevelsCleared() {
+            return levelsCleared;
+        }
+    }
+
+    private final InputPolicy policy;
+    private final long maxTicks;
+
+    /**
+     * @param policy Input policy of the simulated player
+     * @param maxTicks Tick limit per match, so a player that never dies still finishes
+     */
+    public BatchSimulator(InputPolicy policy, long maxTicks) {
+        this.policy = policy;
+        this.maxTicks = maxTicks;
+    }
+
+    /**
+     * Simulates matches with seeds baseSeed .. baseSeed + matches - 1
+     * @param pool Pool running the matches
+     */
+    public Stats run(ForkJoinPool pool, int matches, long baseSeed) {
+        return pool.invoke(new MatchTask(baseSeed, 0, matches));
+    }
+
+    /**
+     * Plays a single match to game over or the tick limit
+     */
+    void playMatch(long seed, Stats stats) {
+        GameWorld world = new GameWorld(TILE_SIZE, seed);
+        int[] levels = {0};
+        world.setListener(new GameWorld.Listener() {
+            @Override
+            public void onLevelReset() {
+                levels[0]++;
+            }
+        });
+        GameWorld.Player player = world.addPlayer("sim");
+        Random random = new Random(~seed); // Policy decisions must not disturb the world's generator
+
+        long tick = 0;
+        while (!player.gameOver && tick < maxTicks) {
+            char direction = policy.decide(world, player, tick, random);
+            if (direction != 0) {
+                world.steer(player, direction);
+            }
+            world.step();
+            tick++;
+        }
+        stats.record(player.score, tick, player.gameOver, levels[0]);
+    }
+
+    /**
+     * Splits a range of match indices until it is small enough to play directly
+     */
+    private final class MatchTask extends RecursiveTask<Stats> {
+        private static final long serialVersionUID = 1L;
+
+        private final long baseSeed;
+        private final int from;
+        private final int to;
+
+        MatchTask(long baseSeed, int from, int to) {
+            this.baseSeed = baseSeed;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Stats compute() {
+            if (to - from <= MATCHES_PER_TASK) {
+                Stats stats = new Stats();
+                for (int i = from; i < to; i++) {
+                    playMatch(baseSeed + i, stats);
+                }
+                return stats;
+            }
+            int middle = (from + to) >>> 1;
+            MatchTask left = new MatchTask(baseSeed, from, middle);
+            left.fork();
+            Stats right = new MatchTask(baseSeed, middle, to).compute();
+            return right.merge(left.join());
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package game;
+
+import network.Client;
+
+import java.awt.*;
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Always-on client performance counters behind the F3 overlay.
+ * Every game-loop frame appends one row (frame interval, simulation step time,
+ * paint time, snapshot age, RTT) to fixed arrays covering the last
+ * {@link #HISTORY_SECONDS} seconds. Network, allocation and GC rates are
+ * sampled once per second and copied into each row, so a frame costs a few
+ * array stores. Rows can be dumped as CSV to see what a lag spike coincided with.
+ *
+ * Used from the Swing thread only (the game timer and painting both run there).
+ */
+class ClientDiagnostics {
+    static final int HISTORY_SECONDS = 60;
+    private static final int CAPACITY = HISTORY_SECONDS * 20; // 20 frames per second
+    private static final int GRAPH_FRAMES = 120;
+    private static final String CSV_HEADER = "wallMillis,frameMs,stepMs,paintMs,snapshotAgeMs,rttMs,"
+            + "msgsInPerSec,bytesInPerSec,msgsOutPerSec,bytesOutPerSec,allocBytesPerSec,gcMsPerSec";
+
+    // Ring of per-frame rows, struct-of-arrays
+    private final long[] wallMillis = new long[CAPACITY];
+    private final float[] frameMs = new float[CAPACITY];
+    private final float[] stepMs = new float[CAPACITY];
+    private final float[] paintMs = new float[CAPACITY];
+    private final int[] snapshotAgeMs = new int[CAPACITY];
+    private final float[] rttMs = new float[CAPACITY];
+    private final int[] rateIndex = new int[CAPACITY];    // Row of the per-second rates in force
+    private int next = 0;
+    private int size = 0;
+
+    // Per-second rates; as many rows as frames, so a row outlives every frame using it
+    private final long[][] rates = new long[CAPACITY][6];
+    private int rateRow = 0;
+
+    private long lastFrameNanos = 0;
+    private float lastStepMs = 0;
+    private float lastPaintMs = 0;
+    private long sendIntervalMs = 0;
+
+    // Totals at the previous per-second sample
+    private long lastSampleNanos = 0;
+    private Client.Traffic lastTraffic = new Client.Traffic(0, 0, 0, 0);
+    private long lastAllocatedBytes = -1;
+    private long lastGcMillis = 0;
+
+    private static final Color GRAPH_BACKGROUND = new Color(0, 0, 0, 160);
+
+    void recordStep(long nanos) {
+        lastStepMs = nanos / 1_000_000f;
+    }
+
+    void recordPaint(long nanos) {
+        lastPaintMs = nanos / 1_000_000f;
+    }
+
+    /**
+     * Appends this frame's row; called once per game-loop tick
+     */
+    void endFrame(GameNetwork network) {
+        long now = System.nanoTime();
+        if (lastSampleNanos == 0 || now - lastSampleNanos >= 1_000_000_000L) {
+            sampleRates(network, now);
+        }
+
+        wallMillis[next] = System.currentTimeMillis();
+        frameMs[next] = (lastFrameNanos == 0) ? 0 : (now - lastFrameNanos) / 1_000_000f;
+        stepMs[next] = lastStepMs;
+        paintMs[next] = lastPaintMs;
+        snapshotAgeMs[next] = (int) network.getLastSnapshotAgeMs();
+        long rtt = network.getLastRttMicros();
+        rttMs[next] = (rtt < 0) ? -1 : rtt / 1000f;
+        rateIndex[next] = rateRow;
+        sendIntervalMs = network.getSendIntervalMs();
+        lastFrameNanos = now;
+        next = (next + 1) % CAPACITY;
+        size = Math.min(size + 1, CAPACITY);
+    }
+
+    /**
+     * Turns the change in traffic, allocation and GC totals into per-second rates
+     */
+    private void sampleRates(GameNetwork network, long now) {
+        double seconds = (lastSampleNanos == 0) ? 1 : (now - lastSampleNanos) / 1e9;
+        Client.Traffic traffic = network.getTraffic();
+        long allocated = allocatedBytes();
+        long gcMillis = gcMillis();
+
+        long[] row = rates[(rateRow + 1) % rates.length];
+        row[0] = Math.round((traffic.messagesIn() - lastTraffic.messagesIn()) / seconds);
+        row[1] = Math.round((traffic.bytesIn() - lastTraffic.bytesIn()) / seconds);
+        row[2] = Math.round((traffic.messagesOut() - lastTraffic.messagesOut()) / seconds);
+        row[3] = Math.round((traffic.bytesOut() - lastTraffic.bytesOut()) / seconds);
+        // Threads that ended take their totals with them; clamp rather than report negative rates
+        row[4] = (allocated < 0 || lastAllocatedBytes < 0) ? -1
+                : Math.round(Math.max(0, allocated - lastAllocatedBytes) / seconds);
+        row[5] = (lastSampleNanos == 0) ? 0 : Math.round((gcMillis - lastGcMillis) / seconds);
+        rateRow = (rateRow + 1) % rates.length;
+
+        lastSampleNanos = now;
+        lastTraffic = traffic;
+        lastAllocatedBytes = allocated;
+        lastGcMillis = gcMillis;
+    }
+
+    /**
+     * @return Bytes allocated by all live threads, or -1 if the JVM cannot tell
+     */
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean hotspot
+                && hotspot.isThreadAllocatedMemorySupported() && hotspot.isThreadAllocatedMemoryEnabled()) {
+            long total = 0;
+            for (long bytes : hotspot.getThreadAllocatedBytes(threads.getAllThreadIds())) {
+                if (bytes > 0) total += bytes; // -1 for threads that ended meanwhile
+            }
+            return total;
+        }
+        return -1;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Index of the row written the given number of frames ago (0 = latest)
+     */
+    private int rowAgo(int framesAgo) {
+        return Math.floorMod(next - 1 - framesAgo, CAPACITY);
+    }
+
+    /**
+     * @return Frames per second over the last second of rows
+     */
+    float fps() {
+        int frames = Math.min(size, 20);
+        float total = 0;
+        for (int i = 0; i < frames; i++) {
+            total += frameMs[rowAgo(i)];
+        }
+        return (total <= 0) ? 0 : frames * 1000f / total;
+    }
+
+    /**
+     * Draws the counters and a frame-time graph (late frames are red)
+     */
+    void draw(Graphics g, int x, int y) {
+        if (size == 0) return;
+        int latest = rowAgo(0);
+        long[] rate = rates[rateIndex[latest]];
+        g.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        g.setColor(Color.GREEN);
+        g.drawString(String.format("fps %.1f  frame %.1f ms  step %.2f ms  paint %.2f ms",
+                fps(), frameMs[latest], stepMs[latest], paintMs[latest]), x, y);
+        g.drawString(String.format("in %d msg/s %.1f KB/s  out %d msg/s %.1f KB/s  send every %d ms",
+                rate[0], rate[1] / 1024.0, rate[2], rate[3] / 1024.0, sendIntervalMs), x, y + 14);
+        g.drawString(String.format("alloc %s  gc %d ms/s  snapshot age %d ms  rtt %.1f ms",
+                (rate[4] < 0) ? "n/a" : String.format("%.1f MB/s", rate[4] / (1024.0 * 1024.0)),
+                rate[5], snapshotAgeMs[latest], rttMs[latest]), x, y + 28);
+
+        // Frame-time graph, newest on the right; the middle line is the 50 ms target frame time
+        int graphHeight = 40;
+        int graphTop = y + 36;
+        int frames = Math.min(size, GRAPH_FRAMES);
+        g.setColor(GRAPH_BACKGROUND);
+        g.fillRect(x, graphTop, GRAPH_FRAMES * 2, graphHeight);
+        for (int i = 0; i < frames; i++) {
+            float ms = frameMs[rowAgo(i)];
+            int height = Math.min(graphHeight, Math.round(ms * graphHeight / 100f));
+            g.setColor(ms > 55 ? Color.RED : Color.GREEN);
+            g.fillRect(x + (GRAPH_FRAMES - 1 - i) * 2, graphTop + graphHeight - height, 2, height);
+        }
+        g.setColor(Color.GRAY);
+        g.drawLine(x, graphTop + graphHeight / 2, x + GRAPH_FRAMES * 2, graphTop + graphHeight / 2);
+    }
+
+    /**
+     * @param seconds How much history to include, at most {@link #HISTORY_SECONDS}
+     * @return Rows of the last seconds as CSV, oldest first
+     */
+    String toCsv(int seconds) {
+        long cutoff = System.currentTimeMillis() - seconds * 1000L;
+        StringBuilder csv = new StringBuilder(CSV_HEADER.length() + size * 80);
+        csv.append(CSV_HEADER).append('\n');
+        for (int i = size - 1; i >= 0; i--) {
+            int row = rowAgo(i);
+            if (wallMillis[row] < cutoff) continue;
+            long[] rate = rates[rateIndex[row]];
+            csv.append(wallMillis[row]).append(',')
+                    .append(frameMs[row]).append(',')
+                    .append(stepMs[row]).append(',')
+                    .append(paintMs[row]).append(',')
+                    .append(snapshotAgeMs[row]).append(',')
+                    .append(rttMs[row]);
+            for (long value : rate) {
+                csv.append(',').append(value);
+            }
+            csv.append('\n');
+        }
+        return csv.toString();
+    }
+
+    /**
+     * Writes the last seconds of rows to a CSV file in the working directory.
+     * The rows are copied here; the file is written on a background thread.
+     */
+    void dumpCsv(int seconds) {
+        String csv = toCsv(seconds);
+        Path file = Path.of("pacman-trace-" + System.currentTimeMillis() + ".csv");
+        Thread writer = new Thread(() -> {
+            try {
+                Files.writeString(file, csv, StandardCharsets.UTF_8);
+                System.out.println("Diagnostics trace written to " + file.toAbsolutePath());
+            } catch (IOException e) {
+                System.err.println("Could not write diagnostics trace: " + e.getMessage());
+            }
+        }, "diagnostics-dump");
+        writer.setDaemon(true);
+        writer.start();
+    }
+}
@@ -0,0 +1,50 @@
+package game;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder events for the client's game loop.
+ * Disabled unless a recording turns them on; pacman.jfc only keeps frames
+ * slow enough to matter, so a long recording stays small.
+ */
+final class ClientEvents {
+    private ClientEvents() {}
+
+    @Name("pacman.Tick")
+    @Label("Game Tick")
+    @Category({"Pac-Man", "Client"})
+    @Description("One game-loop frame: apply the latest snapshot, step the world, send state")
+    @StackTrace(false)
+    static final class Tick extends Event {
+        @Label("Lockstep")
+        boolean lockstep;
+
+        @Label("Snapshot Applied")
+        boolean snapshotApplied;
+    }
+
+    @Name("pacman.Paint")
+    @Label("Paint")
+    @Category({"Pac-Man", "Client"})
+    @StackTrace(false)
+    static final class Paint extends Event {
+        @Label("Remote Players")
+        int remotePlayers;
+
+        @Label("Pellets")
+        int pellets;
+    }
+
+    @Name("pacman.Deserialize")
+    @Label("Deserialize Snapshot")
+    @Category({"Pac-Man", "Client"})
+    @StackTrace(false)
+    static final class Deserialize extends Event {
+        @Label("Snapshot Size")
+        @DataAmount
+        long snapshotBytes;
+
+        @Label("Players")
+        int players;
+    }
+}
@@ -0,0 +1,41 @@
+package game;
+
+import java.util.ArrayDeque;
+import java.util.function.Supplier;
+
+/**
+ * Free list of reusable entities. Objects are created up front (and on demand
+ * when the pool runs dry) and handed back instead of being dropped, so entities
+ * that come and go during a match do not leave garbage behind. Not thread-safe;
+ * a pool belongs to the thread that drives its world.
+ */
+final class EntityPool<T> {
+    private final ArrayDeque<T> free = new ArrayDeque<>();
+    private final Supplier<T> factory;
+
+    /**
+     * @param factory Creates a new entity when none is free
+     * @param prewarm Entities to create immediately
+     */
+    EntityPool(Supplier<T> factory, int prewarm) {
+        this.factory = factory;
+        for (int i = 0; i < prewarm; i++) {
+            free.push(factory.get());
+        }
+    }
+
+    /**
+     * @return A free entity; the caller initializes all of its state
+     */
+    T acquire() {
+        T entity = free.poll();
+        return (entity != null) ? entity : factory.get();
+    }
+
+    /**
+     * Returns an entity for reuse; the caller must not touch it afterwards
+     */
+    void release(T entity) {
+        free.push(entity);
+    }
+}
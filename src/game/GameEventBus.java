@@ -0,0 +1,92 @@
+package game;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Collects in-game notifications for the renderer to show as toasts.
+ * Posting never blocks on the UI: events go into a queue that the paint code
+ * drains without waiting. Repeats of the same event for the same subject within
+ * {@link #DEDUP_MS} are dropped, and at most {@link #MAX_PER_SECOND} events are
+ * accepted per second so a burst cannot flood the screen.
+ */
+public class GameEventBus {
+    static final long DEDUP_MS = 5_000;
+    static final int MAX_PER_SECOND = 4;
+    private static final int MAX_PENDING = 16; // Undrained events kept; newer ones are dropped
+
+    /**
+     * Kinds of events and how they read on screen (%s is the subject)
+     */
+    public enum Type {
+        PLAYER_LOST("Player %s lost!"),
+        PLAYER_JOINED("Player %s joined"),
+        PLAYER_LEFT("Player %s left"),
+        FOOD_RESET("Pellets reset");
+
+        private final String format;
+
+        Type(String format) {
+            this.format = format;
+        }
+    }
+
+    /**
+     * One posted event
+     * @param subject Player ID or other subject, may be empty
+     */
+    public record Event(Type type, String subject, long postedAt) {
+        public String message() {
+            String shortSubject = (subject.length() > 8) ? subject.substring(0, 8) : subject;
+            return String.format(type.format, shortSubject);
+        }
+    }
+
+    private final Queue<Event> pending = new ConcurrentLinkedQueue<>();
+    private final Map<String, Long> lastPosted = new HashMap<>(); // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private long windowStart = 0;  // Guarded by lock
+    private int windowCount = 0;   // Guarded by lock
+
+    /**
+     * Posts an event unless it repeats a recent one or the rate limit is reached
+     * @return true if the event was queued
+     */
+    public boolean post(Type type, String subject) {
+        long now = System.currentTimeMillis();
+        String key = type + ":" + subject;
+        lock.lock();
+        try {
+            Long last = lastPosted.get(key);
+            if (last != null && now - last < DEDUP_MS) return false;
+            if (now - windowStart >= 1000) {
+                windowStart = now;
+                windowCount = 0;
+            }
+            if (windowCount >= MAX_PER_SECOND || pending.size() >= MAX_PENDING) return false;
+            windowCount++;
+            lastPosted.put(key, now);
+            if (lastPosted.size() > 4 * MAX_PENDING) {
+                lastPosted.values().removeIf(time -> now - time >= DEDUP_MS);
+            }
+        } finally {
+            lock.unlock();
+        }
+        pending.offer(new Event(type, subject, now));
+        return true;
+    }
+
+    public boolean post(Type type) {
+        return post(type, "");
+    }
+
+    /**
+     * @return Oldest undrained event, or null without waiting
+     */
+    public Event poll() {
+        return pending.poll();
+    }
+}
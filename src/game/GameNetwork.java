@@ -1,8 +1,17 @@
 package game;
 
 import network.Client;
+import network.LatencyHistogram;
+import network.Protocol;
+import network.Threads;
 
 import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Handles network communication between game client and server.
@@ -12,20 +21,113 @@ import java.io.IOException;
  * 2. FOOD_EATEN - Food consumption updates
  * 3. GAME_OVER - Game termination status
  * 4. RESET_FOODS - Food positions reset
+ *
+ * When the connection drops unexpectedly the receiver thread reconnects and
+ * resumes the session with the token from the last handshake.
+ *
+ * If the server runs in lockstep mode the handshake carries a shared seed and
+ * every tick arrives as an input frame, queued in order for the simulation.
+ *
+ * Snapshots only carry the food eaten since the previous one, so snapshots that
+ * arrive before the game loop picks them up are merged rather than replaced.
+ *
+ * A clock sync runs every few seconds to track round-trip time and the offset
+ * to the server clock, which turns snapshot timestamps into snapshot ages.
+ *
+ * Player state goes up only when it changed, at most once per send interval,
+ * plus a keepalive copy every second. The interval starts at the tick rate the
+ * server advertises in its handshake (sending faster is wasted) and doubles
+ * while the link looks congested: round trips well above the best seen so
+ * far, or a send that blocks on a full socket buffer.
+ *
+ * Pellet events and resets are tagged with the food epoch (level number) this
+ * client shows. Clearing a level moves to the next epoch at once; snapshots of
+ * an older epoch are then ignored until the server confirms, and a newer epoch
+ * tells the game to restore every pellet before applying the eaten list.
  */
 public class GameNetwork {
+    private static final long RESUME_WINDOW_MS = 25_000; // Stays inside the server grace period
+    private static final long RESUME_RETRY_MS = 500;
+    private static final long TIME_SYNC_INTERVAL_MS = 2_000;
+    private static final long DEFAULT_TICK_MS = 50;         // Servers that do not advertise a tick
+    private static final long KEEPALIVE_MS = 1_000;         // Unchanged state is repeated this often
+    private static final long MAX_SEND_INTERVAL_MS = 400;   // Slowest rate under congestion
+    private static final long CONGESTION_SLACK_MICROS = 25_000; // RTT above 2x minimum plus this is congestion
+    private static final long BLOCKED_SEND_NANOS = 20_000_000;  // A send this slow means a full buffer
+    private static final long RESET_RETRY_MS = 1_000;       // Unconfirmed food resets are sent again after this
+
     private Client client;
-    public boolean isConnected = false;
+    public volatile boolean isConnected = false;
     private String playerId;
-    public volatile String latestGameState;
+    private final AtomicReference<String> latestGameState = new AtomicReference<>();
+
+    private String serverAddress;
+    private int serverPort;
+    private String resumeToken;
+    private volatile long lastSequence = -1; // Last snapshot sequence received
+    private volatile boolean reconnecting = false;
+    private volatile boolean closing = false;
+    private final boolean virtualThreads;
+
+    // Lockstep mode (set by the handshake)
+    private volatile boolean lockstep = false;
+    private long lockstepSeed;
+    private String lockstepPlayer;   // Player number inside the shared simulation
+    private volatile long lockstepJoinTick; // Server tick when this client (re)joined
+    private final Queue<String> frames = new ConcurrentLinkedQueue<>();
+
+    // Latency measurement (read by the debug overlay)
+    private final LatencyHistogram rttHistogram = new LatencyHistogram();
+    private final LatencyHistogram snapshotAgeHistogram = new LatencyHistogram();
+    private volatile long clockOffsetMs = 0; // Server wall clock minus local wall clock
+    private volatile long lastRttMicros = -1;
+    private volatile long lastSnapshotAgeMs = -1;
+    private volatile boolean clockSynced = false;
+    private ScheduledExecutorService timeSync;
+
+    // Adaptive upstream rate; the state fields are used by the game loop thread only
+    private volatile long serverTickMs = DEFAULT_TICK_MS;
+    private volatile long sendIntervalMs = DEFAULT_TICK_MS;
+    private volatile long minRttMicros = Long.MAX_VALUE;
+    private volatile String lastSentState; // Cleared by a new handshake to force a full send
+    private long lastSentAt = 0;
+
+    // Food epoch shown by the game; used by the game loop thread only
+    private long foodEpoch = 0;
+    private long resetSentAt = 0;    // 0 once the server has confirmed our last reset
+    private long handshakeEpoch = -1;
+
+    /**
+     * What to do with the food section of a snapshot
+     */
+    public enum FoodUpdate {
+        APPLY,        // Same level: remove the listed pellets
+        RESTORE_ALL,  // Next level: restore every pellet, then remove the listed ones
+        IGNORE        // Older level than the one shown: stale
+    }
 
     /**
      * Initializes network components
      */
     public GameNetwork() {
+        this(false);
+    }
+
+    /**
+     * @param virtualThreads true to run the message receiver on a virtual thread
+     */
+    public GameNetwork(boolean virtualThreads) {
+        this.virtualThreads = virtualThreads;
         client = new Client();
     }
 
+    /**
+     * @param enabled true to offer the server compression of its lines, from the next connection on
+     */
+    public void setCompression(boolean enabled) {
+        client.setCompression(enabled);
+    }
+
     /**
      * Establishes connection to game server
      * @param address Server IP/hostname
@@ -33,10 +135,15 @@ public class GameNetwork {
      * @throws IOException if connection fails
      */
     public void connectToServer(String address, int port) throws IOException {
+        this.serverAddress = address;
+        this.serverPort = port;
         try {
             client.connect(address, port);
+            client.sendMessage(client.handshake(Protocol.HELLO));
             handleServerHandshake();
+            foodEpoch = Math.max(0, handshakeEpoch); // A new game starts at the room's level
             startMessageReceiver();
+            startTimeSync();
         } catch (IOException e) {
             handleConnectionError(e);
             throw e;
@@ -44,42 +151,208 @@ public class GameNetwork {
     }
 
     /**
-     * Processes initial server handshake message
+     * Processes initial server handshake message (playerId#foods#seq#token#tickMs#epoch[#deflate])
      */
     private void handleServerHandshake() throws IOException {
         String handshake = client.receiveMessage();
-        if (handshake != null) {
-            String[] parts = handshake.split("#", 2);
-            playerId = parts[0];
-            latestGameState = (parts.length > 1) ? "#" + parts[1] : "";
+        if (handshake == null) {
+            throw new IOException("Server closed connection during handshake");
+        }
+        String[] parts = handshake.split(Protocol.SECTION_SEPARATOR, -1);
+        playerId = parts[0];
+        if (parts.length > 5) {
+            // As a snapshot with the epoch, so a resumed client notices resets it missed;
+            // without a server time it is not mistaken for an (empty) player list
+            handshakeEpoch = Long.parseLong(parts[5]);
+            offerGameState(String.join(Protocol.SECTION_SEPARATOR, "", parts[1], parts[2], "", parts[5]));
+        } else {
+            offerGameState((parts.length > 1) ? Protocol.SECTION_SEPARATOR + parts[1] : "");
+        }
+        if (parts.length > 3) {
+            lastSequence = Long.parseLong(parts[2]);
+            resumeToken = parts[3];
+        }
+        if (parts.length > 4) {
+            serverTickMs = Long.parseLong(parts[4]);
+            sendIntervalMs = serverTickMs;
+        }
+        lastSentState = null;
+
+        // Second line: current snapshot, or the lockstep parameters
+        String setup = client.receiveMessage();
+        if (setup == null) {
+            throw new IOException("Server closed connection during handshake");
+        }
+        if (setup.startsWith(Protocol.LOCKSTEP)) {
+            String[] params = setup.substring(Protocol.LOCKSTEP.length()).split(",");
+            lockstepSeed = Long.parseLong(params[0]);
+            lockstepPlayer = params[2];
+            lockstepJoinTick = Long.parseLong(params[3]);
+            lockstep = true;
+        } else {
+            offerGameState(setup);
         }
         isConnected = true;
         System.out.println("Connected to server. Player ID: " + playerId);
     }
 
+    /**
+     * Reconnects and resumes the previous session after a dropped connection
+     * @return true if the session was resumed
+     */
+    private boolean resumeSession() {
+        if (closing || resumeToken == null) return false;
+        reconnecting = true;
+        long deadline = System.currentTimeMillis() + RESUME_WINDOW_MS;
+        String previousId = playerId;
+        try {
+            while (!closing && System.currentTimeMillis() < deadline) {
+                try {
+                    client.connect(serverAddress, serverPort);
+                    client.sendMessage(client.handshake(Protocol.resume(resumeToken, lastSequence)));
+                    handleServerHandshake();
+                    if (!playerId.equals(previousId)) {
+                        System.err.println("Session expired, joined as new player");
+                    }
+                    return true;
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Resume attempt failed: " + e.getMessage());
+                    client.disconnect();
+                }
+                Thread.sleep(RESUME_RETRY_MS);
+            }
+        } catch (IOException e) {
+            handleNetworkError(e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            reconnecting = false;
+        }
+        return false;
+    }
+
     /**
      * Starts background thread for receiving server messages
      */
     private void startMessageReceiver() {
-        new Thread(this::receiveMessages).start();
+        Threads.factory("message-receiver-", virtualThreads).newThread(this::receiveMessages).start();
+    }
+
+    /**
+     * Sends a clock sync request periodically while connected
+     */
+    private void startTimeSync() {
+        timeSync = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "time-sync");
+            t.setDaemon(true);
+            return t;
+        });
+        timeSync.scheduleAtFixedRate(() -> {
+            try {
+                if (isConnected) {
+                    client.sendMessage(Protocol.timeSyncRequest());
+                }
+            } catch (IllegalStateException e) {
+                // Dropped between the check and the send; resume takes over
+            }
+        }, 0, TIME_SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Answers the server's clock sync request or records the result of ours
+     */
+    private void handleTimeSync(String message) {
+        String reply = Protocol.timeSyncReply(message);
+        if (reply != null) {
+            client.sendMessage(reply);
+            return;
+        }
+        Protocol.TimeSample sample = Protocol.parseTimeSyncReply(message);
+        if (sample != null) {
+            rttHistogram.record(sample.rttMicros());
+            lastRttMicros = sample.rttMicros();
+            clockOffsetMs = sample.offsetMillis();
+            clockSynced = true;
+            adaptSendRate(sample.rttMicros());
+        }
+    }
+
+    /**
+     * Backs off the send interval while round trips are inflated and
+     * recovers one server tick per clean sample
+     */
+    private void adaptSendRate(long rttMicros) {
+        long minRtt = Math.min(minRttMicros, rttMicros);
+        minRttMicros = minRtt;
+        if (rttMicros > 2 * minRtt + CONGESTION_SLACK_MICROS) {
+            backOffSendRate();
+        } else {
+            sendIntervalMs = Math.max(serverTickMs, sendIntervalMs - serverTickMs);
+        }
+    }
+
+    private void backOffSendRate() {
+        sendIntervalMs = Math.min(sendIntervalMs * 2, MAX_SEND_INTERVAL_MS);
+    }
+
+    /**
+     * Records how old a snapshot is at the moment the game applies it
+     */
+    public void recordSnapshotAge(String snapshot) {
+        if (!clockSynced) return;
+        long serverTime = Protocol.parseServerTime(snapshot);
+        if (serverTime < 0) return;
+        long ageMs = System.currentTimeMillis() + clockOffsetMs - serverTime;
+        snapshotAgeHistogram.record(ageMs * 1000);
+        lastSnapshotAgeMs = ageMs;
     }
 
     /**
      * Continuous message receiving loop
      */
     private void receiveMessages() {
-        try {
-            while (isConnected) {
-                String message = client.receiveMessage();
-                if (message == null) {
-                    handleDisconnection();
-                    break;
+        do {
+            try {
+                while (isConnected) {
+                    String message = client.receiveMessage();
+                    if (message == null) {
+                        handleDisconnection();
+                        break;
+                    }
+                    if (message.equals(Protocol.PING)) {
+                        client.sendMessage(Protocol.PONG);
+                        continue;
+                    }
+                    if (message.startsWith(Protocol.TIME_SYNC)) {
+                        handleTimeSync(message);
+                        continue;
+                    }
+                    if (message.startsWith(Protocol.FRAME)) {
+                        lastSequence = Protocol.parseFrameTick(message);
+                        frames.add(message);
+                        continue;
+                    }
+                    if (message.startsWith(Protocol.WORLD)) {
+                        // Starting point for the frames that follow it
+                        lastSequence = Protocol.parseWorldTick(message);
+                        frames.add(message);
+                        continue;
+                    }
+                    if (message.startsWith(Protocol.DESYNC)) {
+                        System.err.println("Lockstep desync detected at tick "
+                                + message.substring(Protocol.DESYNC.length()));
+                        continue;
+                    }
+                    long sequence = Protocol.parseSequence(message);
+                    if (sequence >= 0) {
+                        lastSequence = sequence;
+                    }
+                    offerGameState(message);
                 }
-                latestGameState = message;
+            } catch (IOException e) {
+                handleNetworkError(e);
             }
-        } catch (IOException e) {
-            handleNetworkError(e);
-        }
+        } while (resumeSession());
     }
 
     /**
@@ -90,10 +363,190 @@ public class GameNetwork {
     }
 
     /**
-     * @return Last received game state from server
+     * @return true if the server runs the deterministic lockstep mode
+     */
+    public boolean isLockstep() {
+        return lockstep;
+    }
+
+    /**
+     * @return Seed shared by every lockstep client
+     */
+    public long getLockstepSeed() {
+        return lockstepSeed;
+    }
+
+    /**
+     * @return This client's player number in the lockstep simulation
+     */
+    public String getLockstepPlayer() {
+        return lockstepPlayer;
+    }
+
+    /**
+     * @return Server tick at which this client joined (frames before it are replay)
+     */
+    public long getLockstepJoinTick() {
+        return lockstepJoinTick;
+    }
+
+    /**
+     * @return Next lockstep frame (or world snapshot) in tick order, or null if none is pending
+     */
+    public String pollFrame() {
+        return frames.poll();
+    }
+
+    /**
+     * @return Round-trip times from clock sync, in microseconds
+     */
+    public LatencyHistogram getRttHistogram() {
+        return rttHistogram;
+    }
+
+    /**
+     * @return Snapshot ages when applied, in microseconds
+     */
+    public LatencyHistogram getSnapshotAgeHistogram() {
+        return snapshotAgeHistogram;
+    }
+
+    /**
+     * @return Most recent clock sync round trip in microseconds, -1 before the first
+     */
+    public long getLastRttMicros() {
+        return lastRttMicros;
+    }
+
+    /**
+     * @return Age of the most recently applied snapshot, -1 before the first
+     */
+    public long getLastSnapshotAgeMs() {
+        return lastSnapshotAgeMs;
+    }
+
+    /**
+     * @return Messages and bytes exchanged with the server so far
+     */
+    public Client.Traffic getTraffic() {
+        return client.traffic();
+    }
+
+    /**
+     * @return Server wall clock minus local wall clock
+     */
+    public long getClockOffsetMs() {
+        return clockOffsetMs;
+    }
+
+    /**
+     * @return Pending game state from server without consuming it
      */
     public String getLatestGameState() {
-        return latestGameState;
+        return latestGameState.get();
+    }
+
+    /**
+     * Hands the pending game state to the game loop
+     * @return Players of the newest snapshot with the food of every snapshot since the last call, or null
+     */
+    public String takeLatestGameState() {
+        return latestGameState.getAndSet(null);
+    }
+
+    private void offerGameState(String snapshot) {
+        latestGameState.accumulateAndGet(snapshot, GameNetwork::mergeSnapshots);
+    }
+
+    /**
+     * Keeps the newer snapshot but adds the food entries of the older one
+     */
+    private static String mergeSnapshots(String older, String newer) {
+        if (older == null) return newer;
+        String[] olderParts = older.split(Protocol.SECTION_SEPARATOR, -1);
+        String[] newerParts = newer.split(Protocol.SECTION_SEPARATOR, -1);
+        if (olderParts.length < 2 || olderParts[1].isEmpty() || newerParts.length < 2) return newer;
+        if (olderParts.length > 4 && newerParts.length > 4 && !olderParts[4].equals(newerParts[4])) {
+            return newer; // A reset in between: the older food belongs to a finished level
+        }
+        newerParts[1] = newerParts[1].isEmpty()
+                ? olderParts[1]
+                : olderParts[1] + Protocol.ENTRY_SEPARATOR + newerParts[1];
+        return String.join(Protocol.SECTION_SEPARATOR, newerParts);
+    }
+
+    /**
+     * Sends the local player's state if it changed and the send interval has
+     * passed, or as a keepalive. Safe to call every frame; a skipped change
+     * goes out on a later call.
+     * Called from the game loop thread only.
+     * @param state Serialized player state
+     * @return true if the state was sent
+     */
+    public boolean sendPlayerState(String state) {
+        if (!isConnected) return false;
+        long now = System.currentTimeMillis();
+        long sinceLast = now - lastSentAt;
+        boolean changed = !state.equals(lastSentState);
+        boolean due = changed ? sinceLast >= sendIntervalMs : sinceLast >= KEEPALIVE_MS;
+        if (!due) return false;
+
+        long sendStart = System.nanoTime();
+        client.sendMessage(state);
+        if (System.nanoTime() - sendStart > BLOCKED_SEND_NANOS) {
+            backOffSendRate();
+        }
+        lastSentState = state;
+        lastSentAt = now;
+        return true;
+    }
+
+    /**
+     * Reports a pellet the local player ate in the level currently shown
+     */
+    public void sendFoodEaten(int x, int y) {
+        sendGameState(Protocol.foodEaten(x, y, foodEpoch));
+    }
+
+    /**
+     * Asks the server to start the next level after the one currently shown and
+     * moves to it locally without waiting for the confirmation
+     */
+    public void sendFoodReset() {
+        sendGameState(Protocol.resetFoods(foodEpoch));
+        foodEpoch++;
+        resetSentAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Compares a snapshot's food epoch with the level shown and moves to newer levels.
+     * If the server still reports an older level long after our reset (the reset was
+     * lost), the reset is sent again for the server's level.
+     * @param epoch Epoch of the snapshot, -1 if the server does not tag food
+     */
+    public FoodUpdate checkFoodEpoch(long epoch) {
+        if (epoch < 0) return FoodUpdate.APPLY;
+        if (epoch > foodEpoch) {
+            foodEpoch = epoch;
+            resetSentAt = 0;
+            return FoodUpdate.RESTORE_ALL;
+        }
+        if (epoch == foodEpoch) {
+            resetSentAt = 0;
+            return FoodUpdate.APPLY;
+        }
+        if (resetSentAt != 0 && System.currentTimeMillis() - resetSentAt > RESET_RETRY_MS) {
+            foodEpoch = epoch;
+            sendFoodReset();
+        }
+        return FoodUpdate.IGNORE;
+    }
+
+    /**
+     * @return Current minimum time between player state sends
+     */
+    public long getSendIntervalMs() {
+        return sendIntervalMs;
     }
 
     /**
@@ -102,7 +555,9 @@ public class GameNetwork {
      */
     public void sendGameState(String state) {
         if (!isConnected) {
-            System.err.println("Send failed: Not connected to server");
+            if (!reconnecting) {
+                System.err.println("Send failed: Not connected to server");
+            }
             return;
         }
         client.sendMessage(state);
@@ -112,7 +567,12 @@ public class GameNetwork {
      * Closes network connection
      */
     public void disconnect() throws IOException {
+        closing = true;
+        if (timeSync != null) {
+            timeSync.shutdownNow();
+        }
         if (isConnected) {
+            client.sendMessage(Protocol.BYE);
             client.disconnect();
             isConnected = false;
             System.out.println("Disconnected from server");
@@ -0,0 +1,537 @@
+package game;
+
+import java.util.*;
+
+/**
+ * Pac-Man game rules without rendering: maze, ghosts, pellets and one or more players.
+ * All randomness comes from a seeded generator and every collection iterates in a
+ * fixed order, so two worlds built with the same seed and fed the same inputs
+ * advance identically. The panel drives one of these per client; lockstep mode and
+ * headless simulations rely on the determinism.
+ */
+public class GameWorld {
+
+    /**
+     * Represents a game entity (wall, ghost, food, or player)
+     */
+    class Block {
+        int x, y, width, height;
+        SpriteAtlas.Sprite sprite;
+
+        int startX, startY;
+        char direction = 'U'; // U D L R
+        int velocityX = 0;
+        int velocityY = 0;
+        int slot = -1;        // Index in the pellet set, -1 for other entities
+
+        Block(SpriteAtlas.Sprite sprite, int x, int y, int width, int height) {
+            this.sprite = sprite;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+            this.startX = x;
+            this.startY = y;
+            updateVelocity();
+        }
+
+        /**
+         * Updates movement direction and handles wall collisions
+         */
+        void updateDirection(char newDirection) {
+            char prevDirection = this.direction;
+            this.direction = newDirection;
+            updateVelocity();
+
+            // Test movement and revert if collision occurs
+            this.x += this.velocityX;
+            this.y += this.velocityY;
+            for (Block wall : walls) {
+                if (collision(this, wall)) {
+                    this.x -= this.velocityX;
+                    this.y -= this.velocityY;
+                    this.direction = prevDirection;
+                    updateVelocity();
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Sets velocity based on current direction
+         */
+        void updateVelocity() {
+            velocityX = switch (direction) {
+                case 'L' -> -tileSize/4;
+                case 'R' -> tileSize/4;
+                default -> 0;
+            };
+
+            velocityY = switch (direction) {
+                case 'U' -> -tileSize/4;
+                case 'D' -> tileSize/4;
+                default -> 0;
+            };
+        }
+
+        void reset() {
+            x = startX;
+            y = startY;
+            velocityX = 0;
+            velocityY = 0;
+        }
+
+        /**
+         * Returns to the state the entity had when it was created
+         */
+        void respawn() {
+            x = startX;
+            y = startY;
+            direction = 'U';
+            updateVelocity();
+        }
+
+        /**
+         * Moves the entity's start point, e.g. when a pooled entity is reused
+         */
+        void place(int x, int y) {
+            this.x = x;
+            this.y = y;
+            this.startX = x;
+            this.startY = y;
+        }
+
+        /**
+         * Appends the moving state (x,y,direction,velocityX,velocityY) for a world snapshot
+         */
+        void encode(StringBuilder out) {
+            out.append(x).append(',').append(y).append(',').append(direction)
+                    .append(',').append(velocityX).append(',').append(velocityY);
+        }
+
+        /**
+         * Restores the state written by {@link #encode}, starting at fields[from]
+         */
+        void decode(String[] fields, int from) {
+            x = Integer.parseInt(fields[from]);
+            y = Integer.parseInt(fields[from + 1]);
+            direction = fields[from + 2].charAt(0);
+            velocityX = Integer.parseInt(fields[from + 3]);
+            velocityY = Integer.parseInt(fields[from + 4]);
+        }
+    }
+
+    /**
+     * A Pac-Man with its own score and lives
+     */
+    public class Player {
+        final String id;
+        final Block pacman;
+        int score = 0;
+        int lives = INITIAL_LIVES;
+        boolean gameOver = false;
+
+        Player(String id) {
+            this.id = id;
+            this.pacman = new Block(SpriteAtlas.Sprite.PACMAN_RIGHT, spawnX, spawnY, tileSize, tileSize);
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public int getScore() {
+            return score;
+        }
+
+        public int getLives() {
+            return lives;
+        }
+
+        public boolean isGameOver() {
+            return gameOver;
+        }
+    }
+
+    /**
+     * Notified of rule events that the owner may want to forward
+     */
+    public interface Listener {
+        /** A player lost its last life */
+        default void onGameOver(Player player) {}
+
+        /** A player ate a pellet; called before a level reset it may cause */
+        default void onPelletEaten(Player player, Block food) {}
+
+        /** Every pellet was eaten and the level was reloaded */
+        default void onLevelReset() {}
+    }
+
+    // region Game Configuration Constants
+    static final int INITIAL_LIVES = 3;
+    private static final String[] TILE_MAP = {
+            "XXXXXXXXXXXXXXXXXXX",
+            "X        X        X",
+            "X XX XXX X XXX XX X",
+            "X                 X",
+            "X XX X XXXXX X XX X",
+            "X    X       X    X",
+            "XXXX XXXX XXXX XXXX",
+            "OOOX X       X XOOO",
+            "XXXX X XXrXX X XXXX",
+            "O       bpo       O",
+            "XXXX X XXXXX X XXXX",
+            "OOOX X       X XOOO",
+            "XXXX X XXXXX X XXXX",
+            "X        X        X",
+            "X XX XXX X XXX XX X",
+            "X  X     P     X  X",
+            "XX X X XXXXX X X XX",
+            "X    X   X   X    X",
+            "X XXXXXX X XXXXXX X",
+            "X                 X",
+            "XXXXXXXXXXXXXXXXXXX"
+    };
+    final int rowCount = TILE_MAP.length;
+    final int columnCount = TILE_MAP[0].length();
+    final int tileSize;
+    final int boardWidth;
+    final int boardHeight;
+
+    // region Game State (lists and the pellet set keep iteration order deterministic)
+    final List<Block> walls = new ArrayList<>();
+    final PelletSet foods = new PelletSet();
+    final List<Block> ghosts = new ArrayList<>();
+    final List<Player> players = new ArrayList<>();
+    private int spawnX, spawnY;
+
+    final char[] directions = {'U', 'D', 'L', 'R'};
+    final Random random;
+    private Listener listener = new Listener() {};
+
+    /**
+     * Builds the maze once and sends the ghosts off in random directions.
+     * Later levels reuse the same entities (see {@link #loadMap()}).
+     * @param tileSize Pixels per tile
+     * @param seed Seed for every random decision in this world
+     */
+    public GameWorld(int tileSize, long seed) {
+        this.tileSize = tileSize;
+        this.boardWidth = columnCount * tileSize;
+        this.boardHeight = rowCount * tileSize;
+        this.random = new Random(seed);
+
+        buildMap();
+        for (Block ghost : ghosts) {
+            char newDirection = directions[random.nextInt(4)];
+            ghost.updateDirection(newDirection);
+        }
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Creates walls, ghosts and pellets from the tile map
+     */
+    private void buildMap() {
+        for (int r = 0; r < rowCount; r++) {
+            for (int c = 0; c < columnCount; c++) {
+                String row = TILE_MAP[r];
+                char tileMapChar = row.charAt(c);
+
+                int x = c * tileSize;
+                int y = r * tileSize;
+
+                if (tileMapChar == 'X') {
+                    Block wall = new Block(SpriteAtlas.Sprite.WALL, x, y, tileSize, tileSize);
+                    walls.add(wall);
+                } else if (tileMapChar == 'b') {
+                    Block ghost = new Block(SpriteAtlas.Sprite.BLUE_GHOST, x, y, tileSize, tileSize);
+                    ghosts.add(ghost);
+                } else if (tileMapChar == 'o') {
+                    Block ghost = new Block(SpriteAtlas.Sprite.ORANGE_GHOST, x, y, tileSize, tileSize);
+                    ghosts.add(ghost);
+                } else if (tileMapChar == 'p') {
+                    Block ghost = new Block(SpriteAtlas.Sprite.PINK_GHOST, x, y, tileSize, tileSize);
+                    ghosts.add(ghost);
+                } else if (tileMapChar == 'r') {
+                    Block ghost = new Block(SpriteAtlas.Sprite.RED_GHOST, x, y, tileSize, tileSize);
+                    ghosts.add(ghost);
+                } else if (tileMapChar == 'P') {
+                    spawnX = x;
+                    spawnY = y;
+                } else if (tileMapChar == ' ') {
+                    Block food = new Block(null, x + 14, y + 14, 4, 4);
+                    foods.register(food);
+                }
+            }
+        }
+    }
+
+    /**
+     * Starts the level again in place: every pellet comes back and ghosts and
+     * players return to their spawn points. Walls never change, and nothing is
+     * allocated, so level transitions produce no garbage.
+     */
+    public void loadMap() {
+        foods.reactivateAll();
+        for (Block ghost : ghosts) {
+            ghost.respawn();
+        }
+
+        // Players respawn as fresh Pac-Men
+        for (Player player : players) {
+            player.pacman.respawn();
+            player.pacman.sprite = SpriteAtlas.Sprite.PACMAN_RIGHT;
+        }
+    }
+
+    /**
+     * @return Pool of Pac-Man entities for players simulated elsewhere, prewarmed for a full room
+     */
+    EntityPool<Block> newPlayerPool(int prewarm) {
+        return new EntityPool<>(() -> new Block(SpriteAtlas.Sprite.PACMAN_RIGHT, spawnX, spawnY, tileSize, tileSize),
+                prewarm);
+    }
+
+    /**
+     * Adds a player at the Pac-Man spawn point
+     */
+    public Player addPlayer(String id) {
+        Player player = new Player(id);
+        players.add(player);
+        return player;
+    }
+
+    /**
+     * Removes a player from the simulation
+     */
+    public void removePlayer(String id) {
+        players.removeIf(player -> player.id.equals(id));
+    }
+
+    /**
+     * @return Player with the given ID or null
+     */
+    public Player getPlayer(String id) {
+        for (Player player : players) {
+            if (player.id.equals(id)) return player;
+        }
+        return null;
+    }
+
+    /**
+     * Turns a player's Pac-Man if the maze allows it
+     */
+    public void steer(Player player, char direction) {
+        player.pacman.updateDirection(direction);
+        player.pacman.sprite = SpriteAtlas.Sprite.pacman(player.pacman.direction);
+    }
+
+    /**
+     * Starts a fresh game for a player, reloading the pellets
+     */
+    public void restart(Player player) {
+        loadMap();
+        resetPositions();
+        player.lives = INITIAL_LIVES;
+        player.score = 0;
+        player.gameOver = false;
+    }
+
+    /**
+     * Advances the world by one tick: moves every Pac-Man, the ghosts, and
+     * resolves ghost hits and pellets. A game over ends the tick early.
+     */
+    public void step() {
+        for (Player player : players) {
+            if (!player.gameOver) {
+                movePacman(player.pacman);
+            }
+        }
+
+        for (Block ghost : ghosts) {
+            for (Player player : players) {
+                if (player.gameOver || !collision(ghost, player.pacman)) continue;
+                player.lives -= 1;
+                if (player.lives == 0) {
+                    player.gameOver = true;
+                    listener.onGameOver(player);
+                    return;
+                }
+                resetPositions(player);
+            }
+
+            if (ghost.y == tileSize * 9 && ghost.direction != 'U' && ghost.direction != 'D') {
+                ghost.updateDirection('U');
+            }
+            ghost.x += ghost.velocityX;
+            ghost.y += ghost.velocityY;
+            for (Block wall : walls) {
+                if (collision(ghost, wall) || ghost.x <= 0 || ghost.x + ghost.width >= boardWidth) {
+                    ghost.x -= ghost.velocityX;
+                    ghost.y -= ghost.velocityY;
+                    char newDirection = directions[random.nextInt(4)];
+                    ghost.updateDirection(newDirection);
+                }
+            }
+        }
+
+        for (Player player : players) {
+            if (player.gameOver) continue;
+            Block foodEaten = null;
+            for (Block food : foods) {
+                if (collision(player.pacman, food)) {
+                    foodEaten = food;
+                    player.score += 10;
+                }
+            }
+            if (foodEaten != null) {
+                foods.remove(foodEaten);
+                listener.onPelletEaten(player, foodEaten);
+            }
+        }
+
+        if (foods.isEmpty()) {
+            loadMap();
+            resetPositions();
+            listener.onLevelReset();
+        }
+    }
+
+    private void movePacman(Block pacman) {
+        pacman.x += pacman.velocityX;
+        pacman.y += pacman.velocityY;
+
+        for (Block wall : walls) {
+            if (collision(pacman, wall)) {
+                pacman.x -= pacman.velocityX;
+                pacman.y -= pacman.velocityY;
+                break;
+            }
+        }
+    }
+
+    public boolean collision(Block a, Block b) {
+        return a.x < b.x + b.width &&
+                a.x + a.width > b.x &&
+                a.y < b.y + b.height &&
+                a.y + a.height > b.y;
+    }
+
+    /**
+     * Sends every Pac-Man and ghost back to its start
+     */
+    public void resetPositions() {
+        for (Player player : players) {
+            player.pacman.reset();
+        }
+        resetGhosts();
+    }
+
+    /**
+     * Sends one Pac-Man and all ghosts back to their start
+     */
+    void resetPositions(Player player) {
+        player.pacman.reset();
+        resetGhosts();
+    }
+
+    private void resetGhosts() {
+        for (Block ghost : ghosts) {
+            ghost.reset();
+            char newDirection = directions[random.nextInt(4)];
+            ghost.updateDirection(newDirection);
+        }
+    }
+
+    /**
+     * Restarts the random generator. Lockstep clients reseed at every snapshot
+     * tick, so a world restored from a snapshot continues with the same
+     * random decisions as the worlds that simulated up to it.
+     */
+    void reseed(long seed) {
+        random.setSeed(seed);
+    }
+
+    /**
+     * Serializes everything {@link #step()} reads besides the fixed maze, so a
+     * late lockstep joiner can start from a recent tick instead of replaying
+     * the whole match. Format: pellets/ghost;ghost/player;player, with ghosts as
+     * x,y,dir,vx,vy and players as id,x,y,dir,vx,vy,score,lives,gameOver.
+     * The random generator is not included (see {@link #reseed(long)}).
+     */
+    public String exportState() {
+        StringBuilder out = new StringBuilder(foods.encodeActive()).append('/');
+        for (int i = 0; i < ghosts.size(); i++) {
+            if (i > 0) out.append(';');
+            ghosts.get(i).encode(out);
+        }
+        out.append('/');
+        for (int i = 0; i < players.size(); i++) {
+            Player player = players.get(i);
+            if (i > 0) out.append(';');
+            out.append(player.id).append(',');
+            player.pacman.encode(out);
+            out.append(',').append(player.score).append(',').append(player.lives)
+                    .append(',').append(player.gameOver ? 1 : 0);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Replaces pellets, ghosts and players with a state from {@link #exportState()}
+     * @throws IllegalArgumentException if the state is malformed or from another maze
+     */
+    public void importState(String state) {
+        String[] sections = state.split("/", -1);
+        String[] ghostStates = (sections.length == 3) ? sections[1].split(";") : new String[0];
+        if (ghostStates.length != ghosts.size()) {
+            throw new IllegalArgumentException("World state does not match this maze");
+        }
+        try {
+            foods.decodeActive(sections[0]);
+            for (int i = 0; i < ghostStates.length; i++) {
+                ghosts.get(i).decode(ghostStates[i].split(","), 0);
+            }
+            players.clear();
+            if (!sections[2].isEmpty()) {
+                for (String playerState : sections[2].split(";")) {
+                    String[] fields = playerState.split(",");
+                    Player player = addPlayer(fields[0]);
+                    player.pacman.decode(fields, 1);
+                    player.pacman.sprite = SpriteAtlas.Sprite.pacman(player.pacman.direction);
+                    player.score = Integer.parseInt(fields[6]);
+                    player.lives = Integer.parseInt(fields[7]);
+                    player.gameOver = fields[8].equals("1");
+                }
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("Malformed world state", e);
+        }
+    }
+
+    /**
+     * Hash of the simulated state, compared across lockstep clients to detect desyncs
+     */
+    public long checksum() {
+        long hash = foods.size();
+        for (Player player : players) {
+            hash = hash * 31 + player.id.hashCode();
+            hash = hash * 31 + player.pacman.x;
+            hash = hash * 31 + player.pacman.y;
+            hash = hash * 31 + player.pacman.direction;
+            hash = hash * 31 + player.score;
+            hash = hash * 31 + player.lives;
+            hash = hash * 31 + (player.gameOver ? 1 : 0);
+        }
+        for (Block ghost : ghosts) {
+            hash = hash * 31 + ghost.x;
+            hash = hash * 31 + ghost.y;
+            hash = hash * 31 + ghost.direction;
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,156 @@
+package game;
+
+import network.Protocol;
+
+/**
+ * Advances a shared GameWorld from server input frames in lockstep mode.
+ * Every client applies the same frames to a world built from the same seed,
+ * so only direction changes travel upstream and the simulations stay identical.
+ * A checksum of the world is reported every CHECKSUM_INTERVAL ticks, and the
+ * whole world every SNAPSHOT_INTERVAL ticks so the server can hand late joiners
+ * a recent starting point. Catching up is spread over several game loop ticks.
+ */
+class LockstepDriver {
+    static final int CHECKSUM_INTERVAL = 20;  // Ticks between desync checks (1 s at 50 ms)
+    static final int SNAPSHOT_INTERVAL = 200; // Ticks between world uploads (10 s at 50 ms)
+    static final int MAX_STEPS_PER_ADVANCE = 8; // Catch-up budget per game loop tick
+
+    private final GameWorld world;
+    private final GameNetwork network;
+    private long simulatedTick = 0;
+    private String heldFrame; // Frame whose gap did not fit into the last budget
+
+    LockstepDriver(GameWorld world, GameNetwork network) {
+        this.world = world;
+        this.network = network;
+    }
+
+    /**
+     * Applies the frames received so far, simulating at most MAX_STEPS_PER_ADVANCE
+     * ticks. A replay after a join is worked off over the following calls while
+     * the game loop keeps painting.
+     * @return Number of ticks simulated
+     */
+    int advance() {
+        int steps = 0;
+        while (steps < MAX_STEPS_PER_ADVANCE) {
+            String line = (heldFrame != null) ? heldFrame : network.pollFrame();
+            heldFrame = null;
+            if (line == null) break;
+            if (line.startsWith(Protocol.WORLD)) {
+                restore(line);
+                continue;
+            }
+            int budget = MAX_STEPS_PER_ADVANCE - steps;
+            int applied = applyFrame(line, budget);
+            if (applied < 0) {
+                steps += budget;
+                heldFrame = line;
+            } else {
+                steps += applied;
+            }
+        }
+        return steps;
+    }
+
+    /**
+     * Applies one FRAME:tick:entries line. Ticks without inputs are only sent
+     * live, so gaps in replayed history are filled with empty steps.
+     * @param budget Most ticks to simulate
+     * @return Ticks simulated, or -1 if the budget ran out inside the gap
+     */
+    private int applyFrame(String frame, int budget) {
+        long tick = Protocol.parseFrameTick(frame);
+        if (tick <= simulatedTick) return 0; // Already applied before a resume
+
+        int steps = 0;
+        while (simulatedTick < tick - 1) {
+            if (steps == budget) return -1;
+            stepTick();
+            steps++;
+        }
+        if (steps == budget) return -1;
+
+        int entriesStart = frame.indexOf(':', Protocol.FRAME.length()) + 1;
+        if (entriesStart > 0 && entriesStart < frame.length()) {
+            for (String entry : frame.substring(entriesStart).split(",")) {
+                applyEntry(entry);
+            }
+        }
+        stepTick();
+        return steps + 1;
+    }
+
+    /**
+     * Jumps to a WORLD:tick:state snapshot unless the world is already past it
+     */
+    private void restore(String line) {
+        long tick = Protocol.parseWorldTick(line);
+        if (tick <= simulatedTick) return;
+        try {
+            world.importState(line.substring(line.indexOf(':', Protocol.WORLD.length()) + 1));
+        } catch (IllegalArgumentException e) {
+            System.err.println("Ignoring world snapshot for tick " + tick + ": " + e.getMessage());
+            return;
+        }
+        simulatedTick = tick;
+        world.reseed(network.getLockstepSeed() ^ tick);
+    }
+
+    private void applyEntry(String entry) {
+        if (entry.isEmpty()) return;
+        char first = entry.charAt(0);
+        if (first == Protocol.FRAME_JOIN) {
+            world.addPlayer(entry.substring(1));
+            return;
+        }
+        if (first == Protocol.FRAME_LEAVE) {
+            world.removePlayer(entry.substring(1));
+            return;
+        }
+
+        char action = entry.charAt(entry.length() - 1);
+        GameWorld.Player player = world.getPlayer(entry.substring(0, entry.length() - 1));
+        if (player == null) return;
+        if (action == Protocol.INPUT_RESTART) {
+            if (player.gameOver) {
+                world.restart(player);
+            }
+        } else if (!player.gameOver) {
+            world.steer(player, action);
+        }
+    }
+
+    private void stepTick() {
+        world.step();
+        simulatedTick++;
+        boolean snapshotTick = simulatedTick % SNAPSHOT_INTERVAL == 0;
+        if (snapshotTick) {
+            // Every client reseeds here, so a restored world draws the same numbers
+            world.reseed(network.getLockstepSeed() ^ simulatedTick);
+        }
+        // Only report live ticks; the server no longer tracks replayed history
+        if (simulatedTick < network.getLockstepJoinTick()) return;
+        if (simulatedTick % CHECKSUM_INTERVAL == 0) {
+            network.sendGameState(Protocol.CHECKSUM + simulatedTick + "," + world.checksum());
+        }
+        if (snapshotTick) {
+            network.sendGameState(Protocol.WORLD + simulatedTick + ":" + world.exportState());
+        }
+    }
+
+    /**
+     * Requests a direction change (or restart) for the local player.
+     * The change takes effect when the server echoes it back in a frame.
+     */
+    void sendInput(char action) {
+        network.sendGameState(Protocol.INPUT + simulatedTick + "," + action);
+    }
+
+    /**
+     * @return Local player, or null until its join frame has been applied
+     */
+    GameWorld.Player localPlayer() {
+        return world.getPlayer(network.getLockstepPlayer());
+    }
+}
@@ -5,138 +5,42 @@ import java.awt.event.*;
 import java.util.*;
 import javax.swing.*;
 import javax.swing.Timer;
+import network.Protocol;
 
 /**
- * Main game panel handling Pac-Man gameplay mechanics, rendering, and network synchronization.
- * Implements core game logic including movement, collision detection, and state management.
+ * Main game panel handling Pac-Man rendering, input and network synchronization.
+ * The game rules live in {@link GameWorld}; this panel drives it from a Swing timer.
+ * In the default mode the local world is simulated here and its state is sent to the
+ * server; in lockstep mode the world only advances on server input frames.
+ * Notable events (players joining, leaving or losing, pellet resets) go through a
+ * {@link GameEventBus} and are shown as toasts on the board instead of dialogs.
  */
 public class PacMan extends JPanel implements ActionListener, KeyListener {
 
-    /**
-     * Represents a game entity (wall, ghost, food, or player)
-     */
-    class Block {
-        int x, y, width, height;
-        Image image;
-
-        int startX, startY;
-        char direction = 'U'; // U D L R
-        int velocityX = 0;
-        int velocityY = 0;
-
-        Block(Image image, int x, int y, int width, int height) {
-            this.image = image;
-            this.x = x;
-            this.y = y;
-            this.width = width;
-            this.height = height;
-            this.startX = x;
-            this.startY = y;
-            updateVelocity();
-        }
-
-        /**
-         * Updates movement direction and handles wall collisions
-         */
-        void updateDirection(char newDirection) {
-            char prevDirection = this.direction;
-            this.direction = newDirection;
-            updateVelocity();
-
-            // Test movement and revert if collision occurs
-            this.x += this.velocityX;
-            this.y += this.velocityY;
-            for (Block wall : walls) {
-                if (collision(this, wall)) {
-                    this.x -= this.velocityX;
-                    this.y -= this.velocityY;
-                    this.direction = prevDirection;
-                    updateVelocity();
-                    break;
-                }
-            }
-        }
-
-        /**
-         * Sets velocity based on current direction
-         */
-        void updateVelocity() {
-            velocityX = switch (direction) {
-                case 'L' -> -tileSize/4;
-                case 'R' -> tileSize/4;
-                default -> 0;
-            };
-
-            velocityY = switch (direction) {
-                case 'U' -> -tileSize/4;
-                case 'D' -> tileSize/4;
-                default -> 0;
-            };
-        }
-
-        void reset() {
-            x = startX;
-            y = startY;
-            velocityX = 0;
-            velocityY = 0;
-        }
-    }
-
     // region Game Configuration Constants
     private int rowCount = 21;
     private int columnCount = 19;
     private int tileSize = 32;
     private int boardWidth = columnCount * tileSize;
     private int boardHeight = rowCount * tileSize;
-    private static final int INITIAL_LIVES = 3;
-
-    private Image wallImage;
-    private Image blueGhostImage;
-    private Image orangeGhostImage;
-    private Image pinkGhostImage;
-    private Image redGhostImage;
-
-    private Image pacmanUpImage;
-    private Image pacmanDownImage;
-    private Image pacmanLeftImage;
-    private Image pacmanRightImage;
-
-    private String[] tileMap = {
-            "XXXXXXXXXXXXXXXXXXX",
-            "X        X        X",
-            "X XX XXX X XXX XX X",
-            "X                 X",
-            "X XX X XXXXX X XX X",
-            "X    X       X    X",
-            "XXXX XXXX XXXX XXXX",
-            "OOOX X       X XOOO",
-            "XXXX X XXrXX X XXXX",
-            "O       bpo       O",
-            "XXXX X XXXXX X XXXX",
-            "OOOX X       X XOOO",
-            "XXXX X XXXXX X XXXX",
-            "X        X        X",
-            "X XX XXX X XXX XX X",
-            "X  X     P     X  X",
-            "XX X X XXXXX X X XX",
-            "X    X   X   X    X",
-            "X XXXXXX X XXXXXX X",
-            "X                 X",
-            "XXXXXXXXXXXXXXXXXXX"
-    };
+
+    private SpriteAtlas sprites;
+    private long createdAt = System.nanoTime(); // Cleared once the first frame is painted
+    private boolean showDebug = false;          // F3 diagnostics overlay, F4 dumps a CSV trace
+    private final ClientDiagnostics diagnostics = new ClientDiagnostics();
 
     // region Game State
-    HashSet<Block> walls;
-    HashSet<Block> foods;
-    HashSet<Block> ghosts;
-    Block pacman;
-    Map<String, Block> otherPlayers = new HashMap<>();
-    int score = 0;
-    int lives = INITIAL_LIVES;
-    boolean gameOver = false;
-
-    char[] directions = {'U', 'D', 'L', 'R'};
-    Random random = new Random();
+    GameWorld world;
+    GameWorld.Player local;          // Null in lockstep mode until the join frame arrives
+    LockstepDriver lockstep;         // Null unless the server runs lockstep mode
+    Map<String, GameWorld.Block> otherPlayers = new HashMap<>();
+    private EntityPool<GameWorld.Block> playerPool;       // Reused Pac-Men for other players
+    private final Set<String> playersInSnapshot = new HashSet<>();
+    private final Set<String> lostPlayers = new HashSet<>();  // Remote players already announced as lost
+    private boolean firstSnapshot = true;                    // Players already present are not "joined"
+    final GameEventBus events = new GameEventBus();
+    private final ToastOverlay toasts = new ToastOverlay();
+    private static final int PREWARMED_PLAYERS = 8;       // One full room
 
     GameNetwork gameNetwork;
     Timer gameLoop;
@@ -150,198 +54,173 @@ public class PacMan extends JPanel implements ActionListener, KeyListener {
         addKeyListener(this);
         setFocusable(true);
 
-        // Load images
-        wallImage = new ImageIcon(getClass().getResource("/resources/wall.png")).getImage();
-        blueGhostImage = new ImageIcon(getClass().getResource("/resources/blueGhost.png")).getImage();
-        orangeGhostImage = new ImageIcon(getClass().getResource("/resources/orangeGhost.png")).getImage();
-        pinkGhostImage = new ImageIcon(getClass().getResource("/resources/pinkGhost.png")).getImage();
-        redGhostImage = new ImageIcon(getClass().getResource("/resources/redGhost.png")).getImage();
-
-        pacmanUpImage = new ImageIcon(getClass().getResource("/resources/pacmanUp.png")).getImage();
-        pacmanDownImage = new ImageIcon(getClass().getResource("/resources/pacmanDown.png")).getImage();
-        pacmanLeftImage = new ImageIcon(getClass().getResource("/resources/pacmanLeft.png")).getImage();
-        pacmanRightImage = new ImageIcon(getClass().getResource("/resources/pacmanRight.png")).getImage();
-
-        loadMap();
-        for (Block ghost : ghosts) {
-            char newDirection = directions[random.nextInt(4)];
-            ghost.updateDirection(newDirection);
+        // Sprites are pre-scaled to the tile size (usually preloaded before the window opens)
+        sprites = SpriteAtlas.get(tileSize);
+
+        if (gameNetwork.isLockstep()) {
+            // Same seed and same frames on every client -> same simulation
+            world = new GameWorld(tileSize, gameNetwork.getLockstepSeed());
+            lockstep = new LockstepDriver(world, gameNetwork);
+        } else {
+            world = new GameWorld(tileSize, System.nanoTime());
+            playerPool = world.newPlayerPool(PREWARMED_PLAYERS);
+            local = world.addPlayer(String.valueOf(gameNetwork.getPlayerId()));
+            world.setListener(new GameWorld.Listener() {
+                @Override
+                public void onGameOver(GameWorld.Player player) {
+                    gameNetwork.sendGameState(serializeGameState());
+                }
+
+                @Override
+                public void onPelletEaten(GameWorld.Player player, GameWorld.Block food) {
+                    if (player == local && gameNetwork.isConnected) {
+                        gameNetwork.sendFoodEaten(food.x, food.y);
+                    }
+                }
+
+                @Override
+                public void onLevelReset() {
+                    notifyFoodReset();
+                    events.post(GameEventBus.Type.FOOD_RESET);
+                }
+            });
+            notifyFoodReset();
         }
 
         gameLoop = new Timer(50, this); // 20 FPS
         gameLoop.start();
     }
 
-
+    /**
+     * Reloads the level locally and tells the server to reset eaten foods
+     */
     public void loadMap() {
-        walls = new HashSet<>();
-        foods = new HashSet<>();
-        ghosts = new HashSet<>();
-
-        for (int r = 0; r < rowCount; r++) {
-            for (int c = 0; c < columnCount; c++) {
-                String row = tileMap[r];
-                char tileMapChar = row.charAt(c);
-
-                int x = c * tileSize;
-                int y = r * tileSize;
-
-                if (tileMapChar == 'X') {
-                    Block wall = new Block(wallImage, x, y, tileSize, tileSize);
-                    walls.add(wall);
-                } else if (tileMapChar == 'b') {
-                    Block ghost = new Block(blueGhostImage, x, y, tileSize, tileSize);
-                    ghosts.add(ghost);
-                } else if (tileMapChar == 'o') {
-                    Block ghost = new Block(orangeGhostImage, x, y, tileSize, tileSize);
-                    ghosts.add(ghost);
-                } else if (tileMapChar == 'p') {
-                    Block ghost = new Block(pinkGhostImage, x, y, tileSize, tileSize);
-                    ghosts.add(ghost);
-                } else if (tileMapChar == 'r') {
-                    Block ghost = new Block(redGhostImage, x, y, tileSize, tileSize);
-                    ghosts.add(ghost);
-                } else if (tileMapChar == 'P') {
-                    pacman = new Block(pacmanRightImage, x, y, tileSize, tileSize);
-                } else if (tileMapChar == ' ') {
-                    Block food = new Block(null, x + 14, y + 14, 4, 4);
-                    foods.add(food);
-                }
-            }
-        }
+        world.loadMap();
+        notifyFoodReset();
+    }
 
-        // Notify the server to reset eaten foods (via a special message)
+    private void notifyFoodReset() {
+        // Move the room to the next level; stale snapshots are ignored until the server confirms
         if (gameNetwork.isConnected) {
-            gameNetwork.sendGameState("RESET_FOODS"); // Custom signal
+            gameNetwork.sendFoodReset();
         }
-
-
     }
 
     public void paintComponent(Graphics g) {
+        ClientEvents.Paint paint = new ClientEvents.Paint();
+        paint.begin();
+        long paintStart = System.nanoTime();
         super.paintComponent(g);
         draw(g);
+        diagnostics.recordPaint(System.nanoTime() - paintStart);
+        if (paint.shouldCommit()) {
+            paint.remotePlayers = otherPlayers.size();
+            paint.pellets = world.foods.size();
+            paint.commit();
+        }
+        if (createdAt != 0) {
+            System.out.printf("First frame painted %.1f ms after panel creation%n",
+                    (System.nanoTime() - createdAt) / 1_000_000.0);
+            createdAt = 0;
+        }
     }
 
     public void draw(Graphics g) {
-        g.drawImage(pacman.image, pacman.x, pacman.y, pacman.width, pacman.height, null);
+        for (GameWorld.Player player : world.players) {
+            sprites.draw(g, player.pacman.sprite, player.pacman.x, player.pacman.y);
+        }
 
-        for (Block other : otherPlayers.values()) {
-            g.drawImage(other.image, other.x, other.y, other.width, other.height, null);
+        for (GameWorld.Block other : otherPlayers.values()) {
+            sprites.draw(g, other.sprite, other.x, other.y);
         }
 
-        for (Block ghost : ghosts) {
-            g.drawImage(ghost.image, ghost.x, ghost.y, ghost.width, ghost.height, null);
+        for (GameWorld.Block ghost : world.ghosts) {
+            sprites.draw(g, ghost.sprite, ghost.x, ghost.y);
         }
 
-        for (Block wall : walls) {
-            g.drawImage(wall.image, wall.x, wall.y, wall.width, wall.height, null);
+        for (GameWorld.Block wall : world.walls) {
+            sprites.draw(g, wall.sprite, wall.x, wall.y);
         }
 
         g.setColor(Color.WHITE);
-        for (Block food : foods) {
+        for (GameWorld.Block food : world.foods) {
             g.fillRect(food.x, food.y, food.width, food.height);
         }
 
         g.setFont(new Font("Arial", Font.PLAIN, 18));
-        if (gameOver) {
-            g.drawString("Game Over: " + score, tileSize / 2, tileSize / 2);
+        if (local == null) {
+            g.drawString("Joining...", tileSize / 2, tileSize / 2);
+        } else if (local.gameOver) {
+            g.drawString("Game Over: " + local.score, tileSize / 2, tileSize / 2);
         } else {
-            g.drawString("x" + lives + " Score: " + score, tileSize / 2, tileSize / 2);
+            g.drawString("x" + local.lives + " Score: " + local.score, tileSize / 2, tileSize / 2);
         }
-    }
 
-    public void move() {
-        pacman.x += pacman.velocityX;
-        pacman.y += pacman.velocityY;
+        long now = System.currentTimeMillis();
+        toasts.update(events, now);
+        toasts.draw(g, boardWidth / 2, boardHeight - tileSize, now);
 
-        for (Block wall : walls) {
-            if (collision(pacman, wall)) {
-                pacman.x -= pacman.velocityX;
-                pacman.y -= pacman.velocityY;
-                break;
-            }
+        if (showDebug) {
+            drawDebugOverlay(g);
         }
-
-        for (Block ghost : ghosts) {
-            if (collision(ghost, pacman)) {
-                lives -= 1;
-                if (lives == 0) {
-                    gameOver = true;
-                    String gameState = serializeGameState();
-                    gameNetwork.sendGameState(gameState);
-                    return;
-                }
-                resetPositions();
-            }
-
-            if (ghost.y == tileSize * 9 && ghost.direction != 'U' && ghost.direction != 'D') {
-                ghost.updateDirection('U');
-            }
-            ghost.x += ghost.velocityX;
-            ghost.y += ghost.velocityY;
-            for (Block wall : walls) {
-                if (collision(ghost, wall) || ghost.x <= 0 || ghost.x + ghost.width >= boardWidth) {
-                    ghost.x -= ghost.velocityX;
-                    ghost.y -= ghost.velocityY;
-                    char newDirection = directions[random.nextInt(4)];
-                    ghost.updateDirection(newDirection);
-                }
-            }
-        }
-
-        Block foodEaten = null;
-        for (Block food : foods) {
-            if (collision(pacman, food)) {
-                foodEaten = food;
-                score += 10;
-            }
-        }
-        foods.remove(foodEaten);
-
-        if (foods.isEmpty()) {
-            loadMap();
-            resetPositions();
-        }
-    }
-
-    public boolean collision(Block a, Block b) {
-        return a.x < b.x + b.width &&
-                a.x + a.width > b.x &&
-                a.y < b.y + b.height &&
-                a.y + a.height > b.y;
     }
 
-    public void resetPositions() {
-        pacman.reset();
-        pacman.velocityX = 0;
-        pacman.velocityY = 0;
-        for (Block ghost : ghosts) {
-            ghost.reset();
-            char newDirection = directions[random.nextInt(4)];
-            ghost.updateDirection(newDirection);
-        }
+    /**
+     * Frame, network and memory counters plus latency histograms, toggled with F3
+     */
+    private void drawDebugOverlay(Graphics g) {
+        diagnostics.draw(g, tileSize / 2, tileSize + 4);
+        g.setFont(new Font("Monospaced", Font.PLAIN, 12));
+        g.setColor(Color.GREEN);
+        int y = boardHeight - tileSize / 2;
+        g.drawString("snapshot age " + gameNetwork.getSnapshotAgeHistogram().summary(), tileSize / 2, y);
+        g.drawString("rtt " + gameNetwork.getRttHistogram().summary()
+                + "  offset " + gameNetwork.getClockOffsetMs() + " ms", tileSize / 2, y - 14);
     }
 
     @Override
     public void actionPerformed(ActionEvent e) {
+        ClientEvents.Tick tick = new ClientEvents.Tick();
+        tick.begin();
         try {
-            String receivedState = gameNetwork.getLatestGameState();
+            if (lockstep != null) {
+                long stepStart = System.nanoTime();
+                lockstep.advance();
+                diagnostics.recordStep(System.nanoTime() - stepStart);
+                diagnostics.endFrame(gameNetwork);
+                local = lockstep.localPlayer();
+                repaint();
+                return;
+            }
+
+            String receivedState = gameNetwork.takeLatestGameState();
             if (receivedState != null) {
+                ClientEvents.Deserialize parse = new ClientEvents.Deserialize();
+                parse.begin();
                 deserializeGameState(receivedState);
-                gameNetwork.latestGameState = null;
-            }
-            move();
-            if (gameNetwork.isConnected) {
-                String gameState = serializeGameState();
-                gameNetwork.sendGameState(gameState);
+                if (parse.shouldCommit()) {
+                    parse.snapshotBytes = receivedState.length();
+                    parse.players = otherPlayers.size();
+                    parse.commit();
+                }
+                gameNetwork.recordSnapshotAge(receivedState);
+                tick.snapshotApplied = true;
             }
+            long stepStart = System.nanoTime();
+            world.step();
+            diagnostics.recordStep(System.nanoTime() - stepStart);
+            diagnostics.endFrame(gameNetwork);
+            // Only goes out if it changed (or as a keepalive), at the adaptive send rate
+            gameNetwork.sendPlayerState(serializeGameState());
             repaint();
-            if (gameOver) {
+            if (local.gameOver) {
                 gameLoop.stop();
             }
         } catch (Exception ex) {
             System.err.println("Error in game loop: " + ex.getMessage());
+        } finally {
+            tick.lockstep = lockstep != null;
+            tick.commit();
         }
     }
 
@@ -353,62 +232,74 @@ public class PacMan extends JPanel implements ActionListener, KeyListener {
 
     @Override
     public void keyReleased(KeyEvent e) {
-        if (gameOver) {
-            loadMap();
-            resetPositions();
-            lives = 3;
-            score = 0;
-            gameOver = false;
+        if (e.getKeyCode() == KeyEvent.VK_F3) {
+            showDebug = !showDebug;
+            repaint();
+            return;
+        }
+        if (e.getKeyCode() == KeyEvent.VK_F4) {
+            diagnostics.dumpCsv(ClientDiagnostics.HISTORY_SECONDS);
+            return;
+        }
+        if (lockstep != null) {
+            sendLockstepInput(e);
+            return;
+        }
+
+        if (local.gameOver) {
+            world.restart(local);
             gameLoop.start();
+            events.post(GameEventBus.Type.FOOD_RESET);
 
             // Send reset signal and force a state update
-            gameNetwork.sendGameState("RESET_FOODS");
+            notifyFoodReset();
             String gameState = serializeGameState();
             gameNetwork.sendGameState(gameState);
         }
 
         if (e.getKeyCode() == KeyEvent.VK_UP) {
-            pacman.updateDirection('U');
+            world.steer(local, 'U');
         } else if (e.getKeyCode() == KeyEvent.VK_DOWN) {
-            pacman.updateDirection('D');
+            world.steer(local, 'D');
         } else if (e.getKeyCode() == KeyEvent.VK_LEFT) {
-            pacman.updateDirection('L');
+            world.steer(local, 'L');
         } else if (e.getKeyCode() == KeyEvent.VK_RIGHT) {
-            pacman.updateDirection('R');
-        }
-
-        if (pacman.direction == 'U') {
-            pacman.image = pacmanUpImage;
-        } else if (pacman.direction == 'D') {
-            pacman.image = pacmanDownImage;
-        } else if (pacman.direction == 'L') {
-            pacman.image = pacmanLeftImage;
-        } else if (pacman.direction == 'R') {
-            pacman.image = pacmanRightImage;
+            world.steer(local, 'R');
         }
 
+        // Send the new direction now unless a state went out within the send interval;
+        // the game loop retries every frame
+        gameNetwork.sendPlayerState(serializeGameState());
+    }
 
-        // Send the updated game state to the server
-        String gameState = serializeGameState();
-        gameNetwork.sendGameState(gameState);
+    /**
+     * Lockstep mode only uploads the requested direction (or a restart)
+     */
+    private void sendLockstepInput(KeyEvent e) {
+        if (local == null) return;
+        if (local.gameOver) {
+            lockstep.sendInput(Protocol.INPUT_RESTART);
+            return;
+        }
+        switch (e.getKeyCode()) {
+            case KeyEvent.VK_UP -> lockstep.sendInput('U');
+            case KeyEvent.VK_DOWN -> lockstep.sendInput('D');
+            case KeyEvent.VK_LEFT -> lockstep.sendInput('L');
+            case KeyEvent.VK_RIGHT -> lockstep.sendInput('R');
+            default -> {}
+        }
     }
 
     private String serializeGameState() {
+        GameWorld.Block pacman = local.pacman;
         StringBuilder state = new StringBuilder();
         state.append(gameNetwork.getPlayerId()).append(",")
                 .append(pacman.x).append(",")
                 .append(pacman.y).append(",")
                 .append(pacman.direction).append(",")
-                .append(score).append(",")
-                .append(lives).append(",")
-                .append(gameOver);
-
-        // Append eaten food positions
-        for (Block food : foods) {
-            if (collision(pacman, food)) {
-                state.append(",FOOD:").append(food.x).append(",").append(food.y);
-            }
-        }
+                .append(local.score).append(",")
+                .append(local.lives).append(",")
+                .append(local.gameOver);
         return state.toString();
     }
 
@@ -416,12 +307,16 @@ public class PacMan extends JPanel implements ActionListener, KeyListener {
         if (gameState == null || gameState.isEmpty()) return;
 
         try {
-            // Split into player states and global foods
-            String[] parts = gameState.split("#", 2);
+            // Split into player states, global foods, sequence number, server time and food epoch
+            String[] parts = gameState.split("#", -1);
             String playerStatesStr = parts[0];
             String globalFoodsStr = (parts.length > 1) ? parts[1] : "";
+            long foodEpoch = (parts.length > 4 && !parts[4].isEmpty()) ? Long.parseLong(parts[4]) : -1;
+            // Handshake states carry food only (no server time); their empty player section means nothing
+            boolean hasPlayerList = parts.length > 3 && !parts[3].isEmpty();
 
-            // Process player states
+            // Process player states; the section lists every other player in the room
+            playersInSnapshot.clear();
             String[] playerStates = playerStatesStr.split(";");
             for (String state : playerStates) {
                 if (state.isEmpty()) continue;
@@ -434,44 +329,62 @@ public class PacMan extends JPanel implements ActionListener, KeyListener {
                     continue; // Skip own state
                 }
 
-                Block other = otherPlayers.get(playerId);
+                playersInSnapshot.add(playerId);
+                GameWorld.Block other = otherPlayers.get(playerId);
                 if (other == null) {
-                    Image image = pacmanRightImage;
-                    other = new Block(image,
-                            Integer.parseInt(playerData[1]),
-                            Integer.parseInt(playerData[2]),
-                            tileSize, tileSize);
+                    other = playerPool.acquire();
+                    other.place(Integer.parseInt(playerData[1]), Integer.parseInt(playerData[2]));
                     otherPlayers.put(playerId, other);
+                    if (!firstSnapshot) {
+                        events.post(GameEventBus.Type.PLAYER_JOINED, playerId);
+                    }
                 }
                 // Update other player's state
                 other.x = Integer.parseInt(playerData[1]);
                 other.y = Integer.parseInt(playerData[2]);
                 other.direction = playerData[3].charAt(0);
 
-                // Check if this player is game over and show a message
+                // Announce once when this player's game ends (the flag stays set every frame)
                 boolean isOtherGameOver = Boolean.parseBoolean(playerData[6]);
-                if (isOtherGameOver) {
-                    JOptionPane.showMessageDialog(this, "Player " + playerId + " lost!");
+                if (!isOtherGameOver) {
+                    lostPlayers.remove(playerId);
+                } else if (lostPlayers.add(playerId)) {
+                    events.post(GameEventBus.Type.PLAYER_LOST, playerId);
                 }
 
-                switch (other.direction) {
-                    case 'U' -> other.image = pacmanUpImage;
-                    case 'D' -> other.image = pacmanDownImage;
-                    case 'L' -> other.image = pacmanLeftImage;
-                    case 'R' -> other.image = pacmanRightImage;
+                other.sprite = SpriteAtlas.Sprite.pacman(other.direction);
+            }
+
+            // Players missing from the snapshot have left; keep their entities for reuse
+            if (hasPlayerList) {
+                Iterator<Map.Entry<String, GameWorld.Block>> others = otherPlayers.entrySet().iterator();
+                while (others.hasNext()) {
+                    Map.Entry<String, GameWorld.Block> entry = others.next();
+                    if (!playersInSnapshot.contains(entry.getKey())) {
+                        playerPool.release(entry.getValue());
+                        others.remove();
+                        lostPlayers.remove(entry.getKey());
+                        events.post(GameEventBus.Type.PLAYER_LEFT, entry.getKey());
+                    }
                 }
+                firstSnapshot = false;
             }
 
 
-        // Update global foods
+        // Update global foods, unless they belong to a level this client has already cleared
+        GameNetwork.FoodUpdate foodUpdate = gameNetwork.checkFoodEpoch(foodEpoch);
+        if (foodUpdate == GameNetwork.FoodUpdate.IGNORE) return;
+        if (foodUpdate == GameNetwork.FoodUpdate.RESTORE_ALL) {
+            world.foods.reactivateAll(); // Another player cleared the level
+        }
         Set<String> globalEatenFoods = new HashSet<>(Arrays.asList(globalFoodsStr.split(";")));
        /* if (!globalFoodsStr.isEmpty()) {
             globalEatenFoods.addAll(Arrays.asList(globalFoodsStr.split(",")));
         }*/
 
-        Iterator<Block> foodIterator = foods.iterator();
+        Iterator<GameWorld.Block> foodIterator = world.foods.iterator();
         while (foodIterator.hasNext()) {
-            Block food = foodIterator.next();
+            GameWorld.Block food = foodIterator.next();
             String foodPos = food.x + "," + food.y;
             if (globalEatenFoods.contains(foodPos)) {
                 foodIterator.remove();
@@ -492,4 +405,4 @@ public class PacMan extends JPanel implements ActionListener, KeyListener {
             System.err.println("Malformed game state: " + gameState);
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,121 @@
+package game;
+
+import java.util.*;
+
+/**
+ * The pellets of a level, allocated once and switched on and off.
+ * Behaves as a set of the pellets still on the board, iterating in the order they
+ * were registered (tile order), so it is a drop-in for the linked set it replaces
+ * and keeps simulations deterministic. Eating a pellet clears a bit; a new level
+ * sets them all again without creating any objects.
+ */
+final class PelletSet extends AbstractSet<GameWorld.Block> {
+    private final List<GameWorld.Block> pellets = new ArrayList<>();
+    private final BitSet active = new BitSet();
+    private int activeCount = 0;
+
+    /**
+     * Adds a pellet to the level layout; it starts on the board
+     */
+    void register(GameWorld.Block pellet) {
+        pellet.slot = pellets.size();
+        pellets.add(pellet);
+        active.set(pellet.slot);
+        activeCount++;
+    }
+
+    /**
+     * Puts every registered pellet back on the board
+     */
+    void reactivateAll() {
+        active.set(0, pellets.size());
+        activeCount = pellets.size();
+    }
+
+    /**
+     * @return Pellets still on the board as dot-separated hex words, for world snapshots
+     */
+    String encodeActive() {
+        StringJoiner words = new StringJoiner(".");
+        for (long word : active.toLongArray()) {
+            words.add(Long.toHexString(word));
+        }
+        return words.toString();
+    }
+
+    /**
+     * Switches the pellets on and off as recorded by {@link #encodeActive()}
+     * @throws NumberFormatException if a word is not hex
+     */
+    void decodeActive(String encoded) {
+        active.clear();
+        if (!encoded.isEmpty()) {
+            String[] words = encoded.split("\\.");
+            long[] bits = new long[words.length];
+            for (int i = 0; i < words.length; i++) {
+                bits[i] = Long.parseUnsignedLong(words[i], 16);
+            }
+            active.or(BitSet.valueOf(bits));
+            if (active.length() > pellets.size()) {
+                active.clear(pellets.size(), active.length());
+            }
+        }
+        activeCount = active.cardinality();
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return o instanceof GameWorld.Block pellet && isRegistered(pellet) && active.get(pellet.slot);
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!contains(o)) return false;
+        active.clear(((GameWorld.Block) o).slot);
+        activeCount--;
+        return true;
+    }
+
+    @Override
+    public void clear() {
+        active.clear();
+        activeCount = 0;
+    }
+
+    @Override
+    public int size() {
+        return activeCount;
+    }
+
+    @Override
+    public Iterator<GameWorld.Block> iterator() {
+        return new Iterator<>() {
+            private int next = active.nextSetBit(0);
+            private int last = -1;
+
+            @Override
+            public boolean hasNext() {
+                return next >= 0;
+            }
+
+            @Override
+            public GameWorld.Block next() {
+                if (next < 0) throw new NoSuchElementException();
+                last = next;
+                next = active.nextSetBit(next + 1);
+                return pellets.get(last);
+            }
+
+            @Override
+            public void remove() {
+                if (last < 0 || !active.get(last)) throw new IllegalStateException();
+                active.clear(last);
+                activeCount--;
+            }
+        };
+    }
+
+    private boolean isRegistered(GameWorld.Block pellet) {
+        return pellet.slot >= 0 && pellet.slot < pellets.size() && pellets.get(pellet.slot) == pellet;
+    }
+}
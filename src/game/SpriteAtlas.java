@@ -0,0 +1,171 @@
+package game;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pre-scaled sprite sheet shared by all game panels.
+ * Source PNGs are decoded in parallel, scaled once to the tile size and packed
+ * into a single display-compatible image, so frames only copy pixels.
+ * Atlases are cached per tile size and can be warmed up before the window opens.
+ */
+public final class SpriteAtlas {
+
+    /**
+     * Sprites packed into the atlas, one tile cell each
+     */
+    public enum Sprite {
+        WALL("wall.png"),
+        BLUE_GHOST("blueGhost.png"),
+        ORANGE_GHOST("orangeGhost.png"),
+        PINK_GHOST("pinkGhost.png"),
+        RED_GHOST("redGhost.png"),
+        PACMAN_UP("pacmanUp.png"),
+        PACMAN_DOWN("pacmanDown.png"),
+        PACMAN_LEFT("pacmanLeft.png"),
+        PACMAN_RIGHT("pacmanRight.png");
+
+        private final String file;
+
+        Sprite(String file) {
+            this.file = file;
+        }
+
+        /**
+         * @return Pac-Man sprite facing the given direction (U D L R)
+         */
+        public static Sprite pacman(char direction) {
+            return switch (direction) {
+                case 'U' -> PACMAN_UP;
+                case 'D' -> PACMAN_DOWN;
+                case 'L' -> PACMAN_LEFT;
+                default -> PACMAN_RIGHT;
+            };
+        }
+    }
+
+    private static final String RESOURCE_DIR = "/resources/";
+    private static final Map<Integer, CompletableFuture<SpriteAtlas>> CACHE = new ConcurrentHashMap<>();
+
+    private final int tileSize;
+    private final BufferedImage sheet;
+    private final long loadNanos;   // Parallel PNG decoding
+    private final long buildNanos;  // Scaling and packing into the sheet
+
+    private SpriteAtlas(int tileSize, BufferedImage sheet, long loadNanos, long buildNanos) {
+        this.tileSize = tileSize;
+        this.sheet = sheet;
+        this.loadNanos = loadNanos;
+        this.buildNanos = buildNanos;
+    }
+
+    /**
+     * Starts building the atlas in the background if it is not cached yet
+     * @param tileSize Target sprite size in pixels
+     */
+    public static CompletableFuture<SpriteAtlas> preload(int tileSize) {
+        boolean[] started = {false};
+        CompletableFuture<SpriteAtlas> atlas = CACHE.computeIfAbsent(tileSize, size -> {
+            started[0] = true;
+            return build(size);
+        });
+        if (started[0]) {
+            // Do not cache a failed build, so the next call retries it
+            atlas.whenComplete((ready, failure) -> {
+                if (failure != null) CACHE.remove(tileSize, atlas);
+            });
+        }
+        return atlas;
+    }
+
+    /**
+     * Returns the cached atlas, waiting for a pending preload if needed
+     * @param tileSize Target sprite size in pixels
+     */
+    public static SpriteAtlas get(int tileSize) {
+        return preload(tileSize).join();
+    }
+
+    private static CompletableFuture<SpriteAtlas> build(int tileSize) {
+        long start = System.nanoTime();
+        Sprite[] sprites = Sprite.values();
+
+        // Decode every PNG on its own worker
+        List<CompletableFuture<BufferedImage>> loads = new ArrayList<>(sprites.length);
+        for (Sprite sprite : sprites) {
+            loads.add(CompletableFuture.supplyAsync(() -> readImage(sprite)));
+        }
+
+        return CompletableFuture.allOf(loads.toArray(new CompletableFuture<?>[0])).thenApply(done -> {
+            long loaded = System.nanoTime();
+            BufferedImage sheet = createCompatibleImage(tileSize * sprites.length, tileSize);
+            Graphics2D g = sheet.createGraphics();
+            try {
+                g.setComposite(AlphaComposite.Src);
+                g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
+                g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+                for (int i = 0; i < sprites.length; i++) {
+                    g.drawImage(loads.get(i).join(), i * tileSize, 0, tileSize, tileSize, null);
+                }
+            } finally {
+                g.dispose();
+            }
+            SpriteAtlas atlas = new SpriteAtlas(tileSize, sheet, loaded - start, System.nanoTime() - loaded);
+            System.out.printf("Sprite atlas ready: %d sprites at %dpx (load %.1f ms, build %.1f ms)%n",
+                    sprites.length, tileSize, atlas.getLoadMillis(), atlas.getBuildMillis());
+            return atlas;
+        });
+    }
+
+    private static BufferedImage readImage(Sprite sprite) {
+        try (InputStream in = SpriteAtlas.class.getResourceAsStream(RESOURCE_DIR + sprite.file)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing sprite resource: " + sprite.file);
+            }
+            return ImageIO.read(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to load sprite " + sprite.file, e);
+        }
+    }
+
+    /**
+     * Creates an image in the screen's native pixel layout so blits stay on the fast path
+     */
+    private static BufferedImage createCompatibleImage(int width, int height) {
+        if (GraphicsEnvironment.isHeadless()) {
+            return new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB_PRE);
+        }
+        GraphicsConfiguration config = GraphicsEnvironment.getLocalGraphicsEnvironment()
+                .getDefaultScreenDevice().getDefaultConfiguration();
+        return config.createCompatibleImage(width, height, Transparency.TRANSLUCENT);
+    }
+
+    /**
+     * Draws a sprite at its native (pre-scaled) size
+     */
+    public void draw(Graphics g, Sprite sprite, int x, int y) {
+        int sx = sprite.ordinal() * tileSize;
+        g.drawImage(sheet, x, y, x + tileSize, y + tileSize, sx, 0, sx + tileSize, tileSize, null);
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public double getLoadMillis() {
+        return loadNanos / 1_000_000.0;
+    }
+
+    public double getBuildMillis() {
+        return buildNanos / 1_000_000.0;
+    }
+}
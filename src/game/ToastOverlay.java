@@ -0,0 +1,62 @@
+package game;
+
+import java.awt.*;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Short-lived messages drawn over the board, fed from a {@link GameEventBus}.
+ * Drained and drawn on the paint thread; the newest toast is at the bottom and
+ * older ones fade out.
+ */
+class ToastOverlay {
+    private static final long TOAST_MS = 3_000;
+    private static final long FADE_MS = 500;
+    private static final int MAX_VISIBLE = 4;
+    private static final Font FONT = new Font("Arial", Font.BOLD, 14);
+
+    private final Deque<GameEventBus.Event> visible = new ArrayDeque<>();
+
+    /**
+     * Takes every pending event without blocking and expires old toasts
+     */
+    void update(GameEventBus events, long now) {
+        GameEventBus.Event event;
+        while ((event = events.poll()) != null) {
+            visible.addLast(event);
+            if (visible.size() > MAX_VISIBLE) {
+                visible.removeFirst();
+            }
+        }
+        while (!visible.isEmpty() && now - visible.peekFirst().postedAt() >= TOAST_MS) {
+            visible.removeFirst();
+        }
+    }
+
+    /**
+     * @param bottom Baseline of the newest toast
+     */
+    void draw(Graphics g, int centerX, int bottom, long now) {
+        if (visible.isEmpty()) return;
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setFont(FONT);
+        FontMetrics metrics = g2.getFontMetrics();
+        int y = bottom;
+        for (var it = visible.descendingIterator(); it.hasNext(); ) {
+            GameEventBus.Event toast = it.next();
+            long left = TOAST_MS - (now - toast.postedAt());
+            float alpha = Math.max(0f, Math.min(1f, left / (float) FADE_MS));
+            g2.setComposite(AlphaComposite.getInstance(AlphaComposite.SRC_OVER, alpha));
+
+            String text = toast.message();
+            int width = metrics.stringWidth(text) + 16;
+            int height = metrics.getHeight() + 6;
+            g2.setColor(new Color(0, 0, 0, 190));
+            g2.fillRoundRect(centerX - width / 2, y - height + 4, width, height, 10, 10);
+            g2.setColor(Color.YELLOW);
+            g2.drawString(text, centerX - width / 2 + 8, y - metrics.getDescent());
+            y -= height + 4;
+        }
+        g2.dispose();
+    }
+}
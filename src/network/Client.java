@@ -1,35 +1,53 @@
 package network;
 
 import java.io.*;
-import java.net.InetSocketAddress;
-import java.net.Socket;
 import java.net.SocketException;
 import java.net.SocketTimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Network client for connecting to a game server.
  * Handles socket communication including connection, message sending/receiving,
- * and graceful disconnection.
+ * and graceful disconnection. The server address "shm" (or "shm:directory")
+ * selects the shared-memory transport for a server on the same host.
+ * With compression enabled the client offers it in each handshake and inflates
+ * the server's compressed lines transparently.
  */
 public class Client {
     private static final int CONNECTION_TIMEOUT = 5000; // 5 seconds
-    private Socket socket;
-    private PrintWriter outputStream;
-    private BufferedReader inputStream;
+    private static final int READ_TIMEOUT = 15000; // Server pings quiet clients well within this
+    private Connection connection;
+    private final ReentrantLock sendLock = new ReentrantLock(); // Game loop and sync threads both send
     private boolean isConnected = false;
+    private boolean compression = false;
+    private LineCompression.Decoder decoder; // Per connection, used by the receiving thread only
+
+    // Running totals across reconnects (bytes counted as line length plus newline)
+    private final AtomicLong messagesIn = new AtomicLong();
+    private final AtomicLong bytesIn = new AtomicLong();
+    private final AtomicLong messagesOut = new AtomicLong();
+    private final AtomicLong bytesOut = new AtomicLong();
+
+    /**
+     * Message and byte totals since the client was created
+     */
+    public record Traffic(long messagesIn, long bytesIn, long messagesOut, long bytesOut) {}
 
     /**
      * Establishes connection to the game server
-     * @param serverAddress IP/hostname of the server
+     * @param serverAddress IP/hostname of the server, or "shm[:directory]"
      * @param port Server port number
      * @throws IOException if connection fails
      */
     public void connect(String serverAddress, int port) throws IOException {
         try {
-            socket = new Socket();
-            socket.connect(new InetSocketAddress(serverAddress, port), CONNECTION_TIMEOUT);
-            outputStream = new PrintWriter(socket.getOutputStream(), true);
-            inputStream = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+            if (decoder != null) {
+                decoder.end();
+                decoder = null;
+            }
+            connection = Connection.connect(serverAddress, port, CONNECTION_TIMEOUT);
+            connection.setReadTimeout(READ_TIMEOUT);
             isConnected = true;
             System.out.println("Connected to server at " + serverAddress + ":" + port);
         } catch (SocketTimeoutException e) {
@@ -37,6 +55,24 @@ public class Client {
         }
     }
 
+    /**
+     * @param enabled true to offer compression in later handshakes
+     */
+    public void setCompression(boolean enabled) {
+        compression = enabled;
+    }
+
+    /**
+     * Adds the compression offer to a handshake line if compression is enabled,
+     * and prepares this connection to inflate the server's lines
+     * @param hello HELLO or RESUME line, sent right after {@link #connect}
+     */
+    public String handshake(String hello) {
+        if (!compression) return hello;
+        decoder = new LineCompression.Decoder();
+        return Protocol.offerDeflate(hello);
+    }
+
     /**
      * Sends a message to the server
      * @param message Game state or command string
@@ -46,7 +82,17 @@ public class Client {
         if (!isConnected) {
             throw new IllegalStateException("Not connected to server");
         }
-        outputStream.println(message);
+        sendLock.lock();
+        try {
+            connection.writeLine(message);
+            connection.flush();
+            messagesOut.incrementAndGet();
+            bytesOut.addAndGet(message.length() + 1);
+        } catch (IOException e) {
+            // The receiving side notices the broken connection
+        } finally {
+            sendLock.unlock();
+        }
     }
 
     /**
@@ -57,7 +103,19 @@ public class Client {
     public String receiveMessage() throws IOException {
         if (!isConnected) return null;
         try {
-            return inputStream.readLine();
+            String message = connection.readLine();
+            if (message != null) {
+                messagesIn.incrementAndGet();
+                bytesIn.addAndGet(message.length() + 1); // As received, before inflating
+                if (decoder != null) {
+                    message = decoder.decode(message);
+                }
+            }
+            return message;
+        } catch (SocketTimeoutException e) {
+            System.err.println("Server silent for " + READ_TIMEOUT + " ms");
+            handleDisconnection();
+            return null;
         } catch (SocketException e) {
             handleDisconnection();
             return null;
@@ -71,9 +129,7 @@ public class Client {
         if (!isConnected) return;
 
         try {
-            if (inputStream != null) inputStream.close();
-            if (outputStream != null) outputStream.close();
-            if (socket != null) socket.close();
+            if (connection != null) connection.close();
             isConnected = false;
             System.out.println("Disconnected from server");
         } catch (IOException e) {
@@ -81,11 +137,18 @@ public class Client {
         }
     }
 
+    /**
+     * @return Traffic totals, cheap enough to read every frame
+     */
+    public Traffic traffic() {
+        return new Traffic(messagesIn.get(), bytesIn.get(), messagesOut.get(), bytesOut.get());
+    }
+
     /**
      * @return true if connection is active
      */
     public boolean isConnected() {
-        return isConnected && !socket.isClosed();
+        return isConnected && !connection.isClosed();
     }
 
     private void handleDisconnection() throws IOException {
@@ -0,0 +1,92 @@
+package network;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Lock-free registry of connection handles stored in indexed slots.
+ * Slots live in fixed-size segments that are installed lazily and never copied,
+ * so adding and removing are O(1) and iteration is wait-free: a broadcast just
+ * scans the slots handed out so far and never blocks the accept thread.
+ * @param <T> Handle type
+ */
+class ClientRegistry<T> {
+    private static final int SEGMENT_BITS = 10;
+    private static final int SEGMENT_SIZE = 1 << SEGMENT_BITS;   // 1024 slots per segment
+    private static final int SEGMENT_MASK = SEGMENT_SIZE - 1;
+    private static final int MAX_SEGMENTS = 1024;                // Up to ~1M handles
+
+    private final AtomicReferenceArray<AtomicReferenceArray<T>> segments = new AtomicReferenceArray<>(MAX_SEGMENTS);
+    private final ConcurrentLinkedQueue<Integer> freeSlots = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger highWater = new AtomicInteger(); // Slots ever handed out
+    private final AtomicInteger size = new AtomicInteger();
+
+    /**
+     * Stores a handle in a free slot
+     * @return Slot index, valid until the handle is removed
+     * @throws IllegalStateException if every slot is taken
+     */
+    int add(T handle) {
+        Integer free = freeSlots.poll();
+        int slot = (free != null) ? free : highWater.getAndIncrement();
+        if (slot >= MAX_SEGMENTS * SEGMENT_SIZE) {
+            highWater.decrementAndGet();
+            throw new IllegalStateException("Client registry full");
+        }
+        segment(slot).set(slot & SEGMENT_MASK, handle);
+        size.incrementAndGet();
+        return slot;
+    }
+
+    /**
+     * Frees a slot if it still holds the given handle
+     * @return true if the handle was removed by this call
+     */
+    boolean remove(int slot, T handle) {
+        AtomicReferenceArray<T> segment = segments.get(slot >>> SEGMENT_BITS);
+        if (segment == null || !segment.compareAndSet(slot & SEGMENT_MASK, handle, null)) {
+            return false;
+        }
+        size.decrementAndGet();
+        freeSlots.offer(slot);
+        return true;
+    }
+
+    /**
+     * Visits every registered handle with its slot. Handles added or removed
+     * concurrently may or may not be visited.
+     */
+    void forEach(ObjIntConsumer<? super T> visitor) {
+        int limit = highWater.get();
+        for (int base = 0; base < limit; base += SEGMENT_SIZE) {
+            AtomicReferenceArray<T> segment = segments.get(base >>> SEGMENT_BITS);
+            if (segment == null) continue;
+            int end = Math.min(SEGMENT_SIZE, limit - base);
+            for (int i = 0; i < end; i++) {
+                T handle = segment.get(i);
+                if (handle != null) {
+                    visitor.accept(handle, base + i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Number of registered handles
+     */
+    int size() {
+        return size.get();
+    }
+
+    private AtomicReferenceArray<T> segment(int slot) {
+        int index = slot >>> SEGMENT_BITS;
+        AtomicReferenceArray<T> segment = segments.get(index);
+        if (segment == null) {
+            segments.compareAndSet(index, null, new AtomicReferenceArray<>(SEGMENT_SIZE));
+            segment = segments.get(index);
+        }
+        return segment;
+    }
+}
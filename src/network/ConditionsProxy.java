@@ -0,0 +1,350 @@
+package network;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * TCP proxy that sits between clients and the server and degrades the link.
+ * Every protocol line is held back by a delay built from the active {@link Profile}:
+ * base latency plus jitter, the time the line needs at the bandwidth cap, and a
+ * retransmission timeout when the line is "lost". Lines normally leave in order, so
+ * a late line blocks the ones behind it like on a real TCP stream; with the reorder
+ * chance a line may be overtaken instead.
+ *
+ * Profiles can be switched on a timer to script a test run, and the proxy reports
+ * how long snapshots and client lines were held back on each report interval.
+ */
+public class ConditionsProxy {
+    private static final long REPORT_INTERVAL_MS = 5000;
+    private static final long RETRANSMIT_TIMEOUT_MS = 200; // Minimum TCP RTO on Linux
+    private static final long REORDER_DELAY_MS = 30;       // Extra hold that lets later lines overtake
+
+    /**
+     * Conditions applied to each direction of the link
+     * @param latencyMs One-way base latency
+     * @param jitterMs Uniform random extra latency, 0 .. jitterMs
+     * @param bytesPerSecond Bandwidth cap, 0 for unlimited
+     * @param reorderChance Chance a line is delayed past the lines behind it
+     * @param lossChance Chance a line needs a retransmission
+     */
+    public record Profile(String name, long latencyMs, long jitterMs, long bytesPerSecond,
+                          double reorderChance, double lossChance) {
+
+        public static final Map<String, Profile> BUILT_IN = Map.of(
+                "lan", new Profile("lan", 1, 1, 0, 0, 0),
+                "broadband", new Profile("broadband", 20, 5, 1_000_000, 0, 0.001),
+                "mobile", new Profile("mobile", 60, 40, 100_000, 0.01, 0.01),
+                "lossy", new Profile("lossy", 40, 20, 250_000, 0.02, 0.05),
+                "satellite", new Profile("satellite", 300, 30, 50_000, 0, 0.005));
+
+        /**
+         * Parses a built-in profile name or a custom
+         * latency/jitter/bytesPerSecond/reorder/loss spec such as 50/10/64000/0.01/0.02
+         */
+        public static Profile parse(String spec) {
+            Profile builtIn = BUILT_IN.get(spec);
+            if (builtIn != null) return builtIn;
+            String[] parts = spec.split("/");
+            if (parts.length != 5) {
+                throw new IllegalArgumentException("Unknown profile: " + spec);
+            }
+            return new Profile(spec, Long.parseLong(parts[0]), Long.parseLong(parts[1]),
+                    Long.parseLong(parts[2]), Double.parseDouble(parts[3]), Double.parseDouble(parts[4]));
+        }
+    }
+
+    /**
+     * One step of a profile script
+     */
+    public record Stage(Profile profile, long durationMs) {
+
+        /**
+         * Parses "profile:seconds,profile:seconds,..." (a single profile without duration runs forever)
+         */
+        public static List<Stage> parseScript(String script) {
+            List<Stage> stages = new ArrayList<>();
+            for (String step : script.split(",")) {
+                int colon = step.lastIndexOf(':');
+                if (colon < 0) {
+                    stages.add(new Stage(Profile.parse(step), Long.MAX_VALUE));
+                } else {
+                    stages.add(new Stage(Profile.parse(step.substring(0, colon)),
+                            Long.parseLong(step.substring(colon + 1)) * 1000));
+                }
+            }
+            return stages;
+        }
+    }
+
+    private final int listenPort;
+    private final String targetHost;
+    private final int targetPort;
+    private final List<Stage> script;
+    private final long seed;
+    private final DelayStats snapshotDelays = new DelayStats(); // Server -> client lines
+    private final DelayStats inputDelays = new DelayStats();    // Client -> server lines
+    private volatile Profile profile;
+    private volatile boolean running = false;
+    private ServerSocket serverSocket;
+    private int connectionCount = 0;
+
+    /**
+     * @param script Profiles to cycle through; the script loops when it ends
+     * @param seed Seed for jitter, loss and reordering so runs are repeatable
+     */
+    public ConditionsProxy(int listenPort, String targetHost, int targetPort, List<Stage> script, long seed) {
+        this.listenPort = listenPort;
+        this.targetHost = targetHost;
+        this.targetPort = targetPort;
+        this.script = script;
+        this.seed = seed;
+        this.profile = script.get(0).profile();
+    }
+
+    /**
+     * Accepts connections until {@link #stop()} is called
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(listenPort);
+        running = true;
+        System.out.println("Proxy on port " + listenPort + " -> " + targetHost + ":" + targetPort
+                + ", profile " + profile.name());
+        startDaemon("proxy-script", this::runScript);
+        startDaemon("proxy-report", this::runReports);
+
+        while (running) {
+            try {
+                Socket client = serverSocket.accept();
+                Socket server;
+                try {
+                    server = new Socket(targetHost, targetPort);
+                } catch (IOException e) {
+                    closeQuietly(client);
+                    throw e;
+                }
+                client.setTcpNoDelay(true);
+                server.setTcpNoDelay(true);
+                int id = ++connectionCount;
+                long connectionSeed = seed * 31 + id;
+                startDaemon("proxy-up-" + id, new Pipe(client, server, connectionSeed, inputDelays)::run);
+                startDaemon("proxy-down-" + id, new Pipe(server, client, ~connectionSeed, snapshotDelays)::run);
+            } catch (IOException e) {
+                if (running) {
+                    System.err.println("Proxy accept failed: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    public void stop() throws IOException {
+        running = false;
+        if (serverSocket != null) serverSocket.close();
+    }
+
+    private static void startDaemon(String name, Runnable task) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void runScript() {
+        try {
+            for (int i = 0; running; i = (i + 1) % script.size()) {
+                Stage stage = script.get(i);
+                if (profile != stage.profile()) {
+                    profile = stage.profile();
+                    System.out.println("Proxy profile: " + profile);
+                }
+                if (stage.durationMs() == Long.MAX_VALUE) return;
+                Thread.sleep(stage.durationMs());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void runReports() {
+        try {
+            while (running) {
+                Thread.sleep(REPORT_INTERVAL_MS);
+                System.out.println("[" + profile.name() + "] server->client " + snapshotDelays.drain()
+                        + " | client->server " + inputDelays.drain());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Line waiting in the proxy until its delivery time. Lines due at the same
+     * time leave in arrival order, since DelayQueue does not keep ties in order.
+     */
+    private record HeldLine(String line, long receivedNanos, long deliverNanos, long order) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(deliverNanos - System.nanoTime(), TimeUnit.NANOSECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            HeldLine that = (HeldLine) other;
+            int byTime = Long.compare(deliverNanos, that.deliverNanos);
+            return (byTime != 0) ? byTime : Long.compare(order, that.order);
+        }
+    }
+
+    /**
+     * One direction of a proxied connection: a reader that schedules lines and
+     * a writer that releases them when due
+     */
+    private final class Pipe {
+        private final Socket from;
+        private final Socket to;
+        private final Random random;
+        private final DelayStats stats;
+        private final DelayQueue<HeldLine> held = new DelayQueue<>();
+        private long lastDeliverNanos = 0;   // In-order delivery floor
+        private long linkFreeNanos = 0;      // When the bandwidth-limited link is idle again
+        private long latestNanos = 0;        // Latest delivery time scheduled, including reordered lines
+        private long order = 0;              // Arrival number of the next line
+
+        Pipe(Socket from, Socket to, long seed, DelayStats stats) {
+            this.from = from;
+            this.to = to;
+            this.random = new Random(seed);
+            this.stats = stats;
+        }
+
+        void run() {
+            Thread writer = new Thread(this::writeLoop, Thread.currentThread().getName() + "-writer");
+            writer.setDaemon(true);
+            writer.start();
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(from.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    long now = System.nanoTime();
+                    held.put(new HeldLine(line, now, schedule(line, now), order++));
+                }
+            } catch (IOException e) {
+                // Peer closed; the writer flushes what is left
+            } finally {
+                // Due after every held line, so the writer closes only once they are out
+                held.put(new HeldLine(null, System.nanoTime(), latestNanos, order++));
+            }
+        }
+
+        /**
+         * Computes when a line may leave the proxy under the current profile
+         */
+        private long schedule(String line, long now) {
+            Profile p = profile;
+            long delayMs = p.latencyMs();
+            if (p.jitterMs() > 0) {
+                delayMs += random.nextLong(p.jitterMs() + 1);
+            }
+            if (random.nextDouble() < p.lossChance()) {
+                delayMs += RETRANSMIT_TIMEOUT_MS + p.latencyMs();
+            }
+            long deliver = now + TimeUnit.MILLISECONDS.toNanos(delayMs);
+
+            // Serialization at the bandwidth cap queues lines behind each other
+            if (p.bytesPerSecond() > 0) {
+                long wireNanos = (line.length() + 1) * 1_000_000_000L / p.bytesPerSecond();
+                linkFreeNanos = Math.max(linkFreeNanos, now) + wireNanos;
+                deliver = Math.max(deliver, linkFreeNanos);
+            }
+
+            if (random.nextDouble() < p.reorderChance()) {
+                // Held past its successors, without moving the in-order floor
+                long late = Math.max(deliver, lastDeliverNanos) + TimeUnit.MILLISECONDS.toNanos(REORDER_DELAY_MS);
+                latestNanos = Math.max(latestNanos, late);
+                return late;
+            }
+            lastDeliverNanos = Math.max(deliver, lastDeliverNanos);
+            latestNanos = Math.max(latestNanos, lastDeliverNanos);
+            return lastDeliverNanos;
+        }
+
+        private void writeLoop() {
+            try (Writer out = new BufferedWriter(
+                    new OutputStreamWriter(to.getOutputStream(), StandardCharsets.UTF_8))) {
+                while (true) {
+                    HeldLine next = held.take();
+                    if (next.line() == null) break;
+                    out.write(next.line());
+                    out.write('\n');
+                    stats.record(System.nanoTime() - next.receivedNanos());
+                    if (held.isEmpty()) {
+                        out.flush();
+                    }
+                }
+            } catch (SocketException e) {
+                // Peer closed
+            } catch (IOException | InterruptedException e) {
+                System.err.println("Proxy pipe failed: " + e.getMessage());
+            } finally {
+                closeQuietly(from);
+                closeQuietly(to);
+            }
+        }
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Hold times recorded since the last report
+     */
+    private static final class DelayStats {
+        private final ReentrantLock lock = new ReentrantLock();
+        private long[] samples = new long[1024];
+        private int count = 0;
+
+        void record(long nanos) {
+            lock.lock();
+            try {
+                if (count == samples.length) {
+                    samples = Arrays.copyOf(samples, count * 2);
+                }
+                samples[count++] = nanos;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return Summary of the samples since the previous call
+         */
+        String drain() {
+            long[] sorted;
+            lock.lock();
+            try {
+                sorted = Arrays.copyOf(samples, count);
+                count = 0;
+            } finally {
+                lock.unlock();
+            }
+            if (sorted.length == 0) return "no lines";
+            Arrays.sort(sorted);
+            return String.format("%d lines, p50 %.1f ms, p95 %.1f ms, max %.1f ms", sorted.length,
+                    percentile(sorted, 0.50), percentile(sorted, 0.95), sorted[sorted.length - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            return sorted[(int) Math.min(sorted.length - 1, Math.round(p * (sorted.length - 1)))] / 1e6;
+        }
+    }
+}
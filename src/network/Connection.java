@@ -0,0 +1,53 @@
+package network;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Line-oriented transport between a client and the server.
+ * Implemented over TCP sockets and over shared-memory rings for processes on
+ * the same host; the protocol above it does not care which one is in use.
+ */
+public interface Connection extends Closeable {
+    /**
+     * Prefix of connect addresses that select the shared-memory transport,
+     * e.g. "shm" or "shm:/dev/shm"
+     */
+    String SHARED_MEMORY_SCHEME = "shm";
+
+    /**
+     * Blocks until a line arrives
+     * @return The line, or null once the peer has closed
+     * @throws java.net.SocketTimeoutException if the read timeout elapses
+     */
+    String readLine() throws IOException;
+
+    /**
+     * Queues a line; it is sent no later than the next {@link #flush()}
+     */
+    void writeLine(String line) throws IOException;
+
+    void flush() throws IOException;
+
+    /**
+     * @param timeoutMs Longest a read may block, 0 for no limit
+     */
+    void setReadTimeout(int timeoutMs) throws IOException;
+
+    boolean isClosed();
+
+    /**
+     * Opens a client connection, choosing the transport from the address
+     * @param address Host name, or "shm[:directory]" for shared memory
+     * @param port Server port
+     * @param timeoutMs Connection timeout
+     */
+    static Connection connect(String address, int port, int timeoutMs) throws IOException {
+        if (address.equals(SHARED_MEMORY_SCHEME) || address.startsWith(SHARED_MEMORY_SCHEME + ":")) {
+            String directory = address.substring(SHARED_MEMORY_SCHEME.length());
+            return ShmConnection.connect(ShmConnection.serverDirectory(
+                    directory.isEmpty() ? null : directory.substring(1), port), timeoutMs);
+        }
+        return SocketConnection.connect(address, port, timeoutMs);
+    }
+}
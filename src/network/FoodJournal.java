@@ -0,0 +1,188 @@
+package network;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Sequenced record of eaten food positions.
+ * Every change bumps a sequence number so a reconnecting client can be sent
+ * only the pellets eaten after the last snapshot it applied.
+ *
+ * Each level is an epoch. A reset starts the next epoch instead of shipping a
+ * fresh food list: clients seeing a higher epoch restore every pellet themselves.
+ * Food and reset events tagged with an older epoch are stale (sent before a reset
+ * the sender had not seen yet) and are ignored.
+ */
+class FoodJournal {
+    private static final int MAX_ENTRIES = 4096; // Bounded history for catch-up
+
+    private final Set<String> eatenFoods = new ConcurrentHashSet<>(); // Positions "x,y"
+    private final ArrayDeque<Entry> journal = new ArrayDeque<>();
+    private long sequence = 0;
+    private long resetSequence = 0; // Sequence of the last RESET_FOODS
+    private long epoch = 0;         // Level number, bumped by every reset
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private record Entry(long sequence, String position) {}
+
+    /**
+     * Immutable copy of the journal for encoding outside its lock
+     * @param since Only changes after this sequence were copied
+     * @param oldest Oldest sequence still in the journal
+     * @param sequences Copied change sequences, newest first
+     * @param positions Positions parallel to sequences
+     * @param all Every eaten position, already encoded
+     */
+    record View(long since, long sequence, long resetSequence, long epoch, long oldest,
+                long[] sequences, String[] positions, String all) {
+
+        /**
+         * Encodes the food eaten after a client's last applied snapshot.
+         * Falls back to the full set when the copy no longer covers that point.
+         * @param lastSeq Last sequence number acknowledged by the client
+         */
+        String encodeSince(long lastSeq) {
+            if (lastSeq < since || lastSeq < resetSequence || lastSeq < oldest - 1 || lastSeq > sequence) {
+                return all;
+            }
+            StringJoiner delta = new StringJoiner(Protocol.ENTRY_SEPARATOR);
+            for (int i = 0; i < sequences.length && sequences[i] > lastSeq; i++) {
+                delta.add(positions[i]);
+            }
+            return delta.toString();
+        }
+    }
+
+    /**
+     * Marks food as eaten
+     * @param position Food position "x,y"
+     * @param eventEpoch Epoch the sender saw the pellet in, -1 if untagged
+     * @return true if the food was not eaten before and the event is not stale
+     */
+    boolean eat(String position, long eventEpoch) {
+        lock.lock();
+        try {
+            if (eventEpoch >= 0 && eventEpoch != epoch) return false;
+            if (!eatenFoods.add(position)) return false;
+            sequence++;
+            journal.addLast(new Entry(sequence, position));
+            if (journal.size() > MAX_ENTRIES) {
+                journal.removeFirst();
+            }
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Clears all eaten food and starts the next epoch, invalidating older catch-up points.
+     * Several clients clearing the same level only start one new epoch.
+     * @param eventEpoch Epoch the sender is resetting, -1 if untagged
+     * @return true unless the reset was stale
+     */
+    boolean reset(long eventEpoch) {
+        lock.lock();
+        try {
+            if (eventEpoch >= 0 && eventEpoch != epoch) return false;
+            eatenFoods.clear();
+            journal.clear();
+            epoch++;
+            sequence++;
+            resetSequence = sequence;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Replaces the eaten set with one moved from another server. The sequence
+     * continues past the source's, and older catch-up points get the full set.
+     * @param positions Eaten positions "x,y"
+     * @param sourceSequence Sequence of the exported journal
+     * @param sourceEpoch Epoch of the exported journal, kept so clients never see it go back
+     */
+    void restore(Collection<String> positions, long sourceSequence, long sourceEpoch) {
+        lock.lock();
+        try {
+            eatenFoods.clear();
+            eatenFoods.addAll(positions);
+            journal.clear();
+            sequence = Math.max(sequence, sourceSequence) + 1;
+            resetSequence = sequence;
+            epoch = Math.max(epoch, sourceEpoch);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Sequence number of the latest change
+     */
+    long sequence() {
+        lock.lock();
+        try {
+            return sequence;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Current level epoch
+     */
+    long epoch() {
+        lock.lock();
+        try {
+            return epoch;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return All eaten positions joined with the protocol entry separator
+     */
+    String encodeAll() {
+        lock.lock();
+        try {
+            return String.join(Protocol.ENTRY_SEPARATOR, eatenFoods);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Encodes the food eaten after a client's last applied snapshot.
+     * Falls back to the full set when the history no longer covers that point.
+     * @param lastSeq Last sequence number acknowledged by the client
+     */
+    String encodeSince(long lastSeq) {
+        return view(lastSeq).encodeSince(lastSeq);
+    }
+
+    /**
+     * Copies the changes after a sequence number together with the full eaten set
+     * @param since Oldest catch-up point the view must serve
+     */
+    View view(long since) {
+        lock.lock();
+        try {
+            long oldest = journal.isEmpty() ? sequence + 1 : journal.peekFirst().sequence();
+            int count = (int) Math.max(0, Math.min(journal.size(), sequence - Math.max(since, oldest - 1)));
+            long[] sequences = new long[count];
+            String[] positions = new String[count];
+            Iterator<Entry> it = journal.descendingIterator();
+            for (int i = 0; i < count && it.hasNext(); i++) {
+                Entry entry = it.next();
+                sequences[i] = entry.sequence();
+                positions[i] = entry.position();
+            }
+            return new View(since, sequence, resetSequence, epoch, oldest, sequences, positions,
+                    String.join(Protocol.ENTRY_SEPARATOR, eatenFoods));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
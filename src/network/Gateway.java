@@ -0,0 +1,536 @@
+package network;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Front door of a server cluster. Accepts game clients on the public port and
+ * relays each connection, line by line, to the backend {@link RoomHost} that
+ * runs its room.
+ *
+ * New players fill open rooms up to ROOM_CAPACITY; a new room goes to the least
+ * loaded backend according to the metrics each backend reports. Resuming clients
+ * are routed by the token seen in their first handshake. Draining a backend
+ * exports each of its rooms, imports them on another backend and closes the
+ * original; the dropped clients resume through the gateway into the moved room.
+ * A backend that stops answering loses its rooms' state, and their clients start
+ * over in a new room elsewhere.
+ */
+public class Gateway {
+    private static final int ROOM_CAPACITY = 8;
+    private static final long METRICS_INTERVAL_MS = 2_000;
+    private static final long EMPTY_ROOM_TIMEOUT_MS = 60_000; // Outlasts the session grace period
+    private static final int CONNECT_TIMEOUT_MS = 2_000;
+    private static final int CONTROL_TIMEOUT_MS = 5_000;      // A backend stuck longer counts as down
+
+    private final int publicPort;
+    private final List<Backend> backends = new ArrayList<>();
+    private final Map<String, Room> rooms = new ConcurrentHashMap<>();
+    private final Map<String, String> roomByToken = new ConcurrentHashMap<>();
+    private final ReentrantLock placementLock = new ReentrantLock(); // Serializes room creation
+    private final ExecutorService relayThreads = Threads.executor("relay-", Threads.virtualAvailable());
+    private ScheduledExecutorService monitor;
+    private ServerSocket serverSocket;
+    private int roomCounter = 0;
+
+    /**
+     * Control connection and last reported load of one backend
+     */
+    private static final class Backend {
+        final InetSocketAddress address;
+        private final ReentrantLock lock = new ReentrantLock(); // One command in flight
+        private Socket socket;
+        private BufferedReader in;
+        private PrintWriter out;
+        volatile boolean draining = false;
+        volatile boolean down = true;
+        volatile int reportedRooms, reportedClients, cpuPercent, heapMb;
+
+        Backend(InetSocketAddress address) {
+            this.address = address;
+        }
+
+        /**
+         * Sends a control command and waits for its reply, reconnecting if needed
+         * @throws IOException if the backend is unreachable or reports an error
+         */
+        String request(String command) throws IOException {
+            String reply;
+            lock.lock();
+            try {
+                if (socket == null || socket.isClosed()) {
+                    socket = new Socket();
+                    socket.connect(address, CONNECT_TIMEOUT_MS);
+                    socket.setSoTimeout(CONTROL_TIMEOUT_MS);
+                    in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true);
+                }
+                out.println(command);
+                reply = in.readLine();
+                if (reply == null) throw new EOFException("Control connection closed");
+                down = false;
+            } catch (IOException e) {
+                down = true;
+                if (socket != null) socket.close();
+                throw e;
+            } finally {
+                lock.unlock();
+            }
+            if (reply.startsWith(Protocol.REPLY_ERROR)) {
+                throw new IOException(reply.substring(Protocol.REPLY_ERROR.length()));
+            }
+            return reply;
+        }
+
+        /**
+         * @return Load score: connected clients, with a busy CPU counting as up to 10 more
+         */
+        double load(int gatewayClients) {
+            return Math.max(reportedClients, gatewayClients) + cpuPercent / 10.0;
+        }
+
+        @Override
+        public String toString() {
+            return address.getHostString() + ":" + address.getPort();
+        }
+    }
+
+    /**
+     * A room and the relays currently connected to it
+     */
+    private static final class Room {
+        final String name;
+        final ReentrantLock lock = new ReentrantLock(); // Held while connecting or migrating
+        final Set<Relay> relays = new ConcurrentHashSet<>();
+        volatile Backend backend;
+        volatile int port;
+        volatile long emptySince = System.currentTimeMillis();
+
+        Room(String name, Backend backend, int port) {
+            this.name = name;
+            this.backend = backend;
+            this.port = port;
+        }
+    }
+
+    /**
+     * @param publicPort Port game clients connect to
+     * @param backendAddresses Control addresses of the backend room hosts
+     */
+    public Gateway(int publicPort, List<InetSocketAddress> backendAddresses) {
+        this.publicPort = publicPort;
+        for (InetSocketAddress address : backendAddresses) {
+            backends.add(new Backend(address));
+        }
+    }
+
+    /**
+     * Starts polling backends and accepting clients on a background thread
+     */
+    public void start() throws IOException {
+        serverSocket = new ServerSocket(publicPort);
+        pollBackends();
+        monitor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "gateway-monitor");
+            t.setDaemon(true);
+            return t;
+        });
+        monitor.scheduleAtFixedRate(this::pollBackends, METRICS_INTERVAL_MS, METRICS_INTERVAL_MS,
+                TimeUnit.MILLISECONDS);
+        System.out.println("Gateway on port " + publicPort + " for backends " + backends);
+
+        new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket client = serverSocket.accept();
+                    relayThreads.execute(() -> serveClient(client));
+                } catch (IOException e) {
+                    if (!serverSocket.isClosed()) {
+                        System.err.println("Gateway accept error: " + e.getMessage());
+                    }
+                }
+            }
+        }, "gateway-acceptor").start();
+    }
+
+    public void shutdown() throws IOException {
+        if (monitor != null) monitor.shutdownNow();
+        serverSocket.close();
+        for (Room room : rooms.values()) {
+            for (Relay relay : room.relays) {
+                relay.close();
+            }
+        }
+        relayThreads.shutdown();
+    }
+
+    /**
+     * Refreshes backend metrics and closes rooms that stayed empty
+     */
+    private void pollBackends() {
+        for (Backend backend : backends) {
+            boolean wasDown = backend.down;
+            try {
+                String[] fields = backend.request(Protocol.METRICS)
+                        .substring(Protocol.METRICS.length() + 1).split(",");
+                backend.reportedRooms = Integer.parseInt(fields[0]);
+                backend.reportedClients = Integer.parseInt(fields[1]);
+                backend.cpuPercent = Integer.parseInt(fields[2]);
+                backend.heapMb = Integer.parseInt(fields[3]);
+            } catch (IOException | RuntimeException e) {
+                if (!wasDown) {
+                    System.err.println("Backend " + backend + " not responding: " + e.getMessage());
+                }
+                backend.down = true;
+            }
+        }
+
+        long now = System.currentTimeMillis();
+        for (Room room : rooms.values()) {
+            if (!room.relays.isEmpty() || now - room.emptySince < EMPTY_ROOM_TIMEOUT_MS) continue;
+            if (!room.lock.tryLock()) continue;
+            try {
+                if (room.relays.isEmpty() && rooms.remove(room.name, room)) {
+                    roomByToken.values().removeIf(room.name::equals);
+                    room.backend.request(Protocol.CLOSE_ROOM + room.name);
+                    System.out.println("Closed empty room " + room.name);
+                }
+            } catch (IOException e) {
+                System.err.println("Closing room " + room.name + " failed: " + e.getMessage());
+            } finally {
+                room.lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Routes a client by its first line, then relays until either side closes
+     */
+    private void serveClient(Socket client) {
+        try {
+            client.setTcpNoDelay(true);
+            BufferedReader clientIn = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            String hello = clientIn.readLine();
+            if (hello == null) {
+                client.close();
+                return;
+            }
+
+            String roomName = null;
+            String forwarded = hello;
+            if (hello.startsWith(Protocol.RESUME)) {
+                String token = hello.substring(Protocol.RESUME.length()).split(",", 2)[0];
+                roomName = roomByToken.get(token);
+            } else if (hello.startsWith(Protocol.ROOM_HELLO)) {
+                roomName = Protocol.withoutOptions(hello.substring(Protocol.ROOM_HELLO.length()));
+                forwarded = Protocol.offersDeflate(hello) ? Protocol.offerDeflate(Protocol.HELLO) : Protocol.HELLO;
+                if (!roomName.matches("[A-Za-z0-9_-]{1,32}")) {
+                    client.close();
+                    return;
+                }
+            }
+
+            Relay relay = connect(client, clientIn, roomName, forwarded);
+            if (relay != null) {
+                relay.run();
+            }
+        } catch (IOException e) {
+            System.err.println("Gateway client error: " + e.getMessage());
+            closeQuietly(client);
+        }
+    }
+
+    /**
+     * Finds (or places) the room and opens the backend side of the relay
+     * @param roomName Requested or resumed room, null to pick an open one
+     * @return Relay whose handshake has been forwarded, or null if no backend is available
+     */
+    private Relay connect(Socket client, BufferedReader clientIn, String roomName, String hello) throws IOException {
+        for (int attempt = 0; attempt <= backends.size(); attempt++) {
+            Room room = (roomName != null) ? rooms.get(roomName) : findOpenRoom();
+            if (room == null) {
+                room = placeRoom((roomName != null) ? roomName : nextRoomName());
+                if (room == null) break;
+            }
+
+            room.lock.lock();
+            try {
+                if (rooms.get(room.name) != room) continue; // Closed or re-placed meanwhile
+                Socket backend = new Socket();
+                try {
+                    backend.connect(new InetSocketAddress(room.backend.address.getAddress(), room.port),
+                            CONNECT_TIMEOUT_MS);
+                } catch (IOException e) {
+                    // Backend gone: its room state is lost, start the room over elsewhere
+                    System.err.println("Room " + room.name + " unreachable on " + room.backend + ", re-placing");
+                    room.backend.down = true;
+                    rooms.remove(room.name, room);
+                    roomName = room.name;
+                    continue;
+                }
+                Relay relay;
+                try {
+                    backend.setTcpNoDelay(true);
+                    relay = new Relay(room, client, clientIn, backend);
+                    relay.forwardHandshake(hello);
+                } catch (IOException | RuntimeException e) {
+                    closeQuietly(backend);
+                    throw e;
+                }
+                room.relays.add(relay);
+                return relay;
+            } finally {
+                room.lock.unlock();
+            }
+        }
+        System.err.println("No backend available for a new client");
+        closeQuietly(client);
+        return null;
+    }
+
+    private Room findOpenRoom() {
+        for (Room room : rooms.values()) {
+            if (room.relays.size() < ROOM_CAPACITY && !room.backend.draining && !room.backend.down) {
+                return room;
+            }
+        }
+        return null;
+    }
+
+    private String nextRoomName() {
+        placementLock.lock();
+        try {
+            return "room-" + (++roomCounter);
+        } finally {
+            placementLock.unlock();
+        }
+    }
+
+    /**
+     * Opens a room on the least loaded backend that accepts new rooms
+     * @return The room, or null if every backend is down or draining
+     */
+    private Room placeRoom(String name) {
+        placementLock.lock();
+        try {
+            Room existing = rooms.get(name);
+            if (existing != null) return existing;
+            for (Backend backend : rankBackends(null)) {
+                try {
+                    int port = parsePort(backend.request(Protocol.OPEN_ROOM + name));
+                    Room room = new Room(name, backend, port);
+                    rooms.put(name, room);
+                    System.out.println("Placed room " + name + " on " + backend);
+                    return room;
+                } catch (IOException e) {
+                    System.err.println("Opening room on " + backend + " failed: " + e.getMessage());
+                }
+            }
+            return null;
+        } finally {
+            placementLock.unlock();
+        }
+    }
+
+    /**
+     * @param exclude Backend to leave out, or null
+     * @return Backends that accept rooms, least loaded first
+     */
+    private List<Backend> rankBackends(Backend exclude) {
+        Map<Backend, Integer> gatewayClients = new HashMap<>();
+        for (Room room : rooms.values()) {
+            gatewayClients.merge(room.backend, room.relays.size(), Integer::sum);
+        }
+        List<Backend> ranked = new ArrayList<>();
+        for (Backend backend : backends) {
+            if (backend != exclude && !backend.draining && !backend.down) {
+                ranked.add(backend);
+            }
+        }
+        ranked.sort(Comparator.comparingDouble(b -> b.load(gatewayClients.getOrDefault(b, 0))));
+        return ranked;
+    }
+
+    private static int parsePort(String reply) throws IOException {
+        try {
+            return Integer.parseInt(reply.substring(Protocol.REPLY_OK.length() + 1));
+        } catch (RuntimeException e) {
+            throw new IOException("Unexpected reply: " + reply);
+        }
+    }
+
+    /**
+     * Stops placing rooms on a backend and moves its rooms to the others
+     * @param address Backend control address as host:port
+     * @return Human-readable outcome
+     */
+    public String drain(String address) {
+        Backend source = findBackend(address);
+        if (source == null) return "Unknown backend " + address;
+        source.draining = true;
+        StringBuilder result = new StringBuilder();
+        for (Room room : rooms.values()) {
+            if (room.backend != source) continue;
+            List<Backend> targets = rankBackends(source);
+            if (targets.isEmpty()) {
+                result.append(room.name).append(": no backend to move to\n");
+                continue;
+            }
+            result.append(room.name).append(": ").append(migrate(room, targets.get(0))).append('\n');
+        }
+        return result.append("Drained ").append(source).toString();
+    }
+
+    /**
+     * Lets a drained backend take new rooms again
+     */
+    public String undrain(String address) {
+        Backend backend = findBackend(address);
+        if (backend == null) return "Unknown backend " + address;
+        backend.draining = false;
+        return "Backend " + backend + " accepts rooms";
+    }
+
+    /**
+     * Moves a room's state to another backend. Connecting clients wait on the room
+     * lock; the clients of the old room are dropped and resume into the new one.
+     */
+    private String migrate(Room room, Backend target) {
+        room.lock.lock();
+        try {
+            Backend source = room.backend;
+            long start = System.nanoTime();
+            String state = source.request(Protocol.EXPORT_ROOM + room.name)
+                    .substring(Protocol.REPLY_STATE.length());
+            int port = parsePort(target.request(Protocol.IMPORT_ROOM + room.name + ":" + state));
+            room.backend = target;
+            room.port = port;
+            source.request(Protocol.CLOSE_ROOM + room.name); // Drops the old connections
+            for (Relay relay : room.relays) {
+                relay.close();
+            }
+            return String.format("moved %s -> %s in %.1f ms", source, target, (System.nanoTime() - start) / 1e6);
+        } catch (IOException e) {
+            return "migration failed: " + e.getMessage();
+        } finally {
+            room.lock.unlock();
+        }
+    }
+
+    private Backend findBackend(String address) {
+        for (Backend backend : backends) {
+            if (backend.toString().equals(address)) return backend;
+        }
+        return null;
+    }
+
+    /**
+     * @return Backends with their last metrics and the rooms they host
+     */
+    public String status() {
+        StringBuilder status = new StringBuilder();
+        for (Backend backend : backends) {
+            status.append(backend).append(backend.down ? " DOWN" : "").append(backend.draining ? " DRAINING" : "")
+                    .append(": rooms ").append(backend.reportedRooms)
+                    .append(", clients ").append(backend.reportedClients)
+                    .append(", cpu ").append(backend.cpuPercent).append("%")
+                    .append(", heap ").append(backend.heapMb).append(" MB\n");
+            for (Room room : rooms.values()) {
+                if (room.backend == backend) {
+                    status.append("  ").append(room.name).append(" port ").append(room.port)
+                            .append(", ").append(room.relays.size()).append(" connected\n");
+                }
+            }
+        }
+        return status.toString();
+    }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * One client connection relayed to its room's backend
+     */
+    private final class Relay {
+        private final Room room;
+        private final Socket client;
+        private final BufferedReader clientIn;
+        private final Socket backend;
+        private final BufferedReader backendIn;
+        private final Writer clientOut;
+        private final Writer backendOut;
+
+        Relay(Room room, Socket client, BufferedReader clientIn, Socket backend) throws IOException {
+            this.room = room;
+            this.client = client;
+            this.clientIn = clientIn;
+            this.backend = backend;
+            this.backendIn = new BufferedReader(new InputStreamReader(backend.getInputStream()));
+            this.clientOut = new BufferedWriter(new OutputStreamWriter(client.getOutputStream()));
+            this.backendOut = new BufferedWriter(new OutputStreamWriter(backend.getOutputStream()));
+        }
+
+        /**
+         * Sends the client's first line and relays the handshake reply,
+         * remembering its resume token for routing later resumes
+         */
+        void forwardHandshake(String hello) throws IOException {
+            backendOut.write(hello + "\n");
+            backendOut.flush();
+            String reply = backendIn.readLine();
+            if (reply == null) throw new IOException("Backend closed during handshake");
+            String[] parts = reply.split(Protocol.SECTION_SEPARATOR, -1);
+            if (parts.length > 3) {
+                roomByToken.put(parts[3], room.name);
+            }
+            clientOut.write(reply + "\n");
+            clientOut.flush();
+        }
+
+        void run() {
+            relayThreads.execute(() -> pump(backendIn, clientOut));
+            pump(clientIn, backendOut);
+        }
+
+        /**
+         * Copies lines until either side closes, flushing when the input runs dry
+         */
+        private void pump(BufferedReader from, Writer to) {
+            try {
+                String line;
+                while ((line = from.readLine()) != null) {
+                    to.write(line);
+                    to.write('\n');
+                    if (!from.ready()) {
+                        to.flush();
+                    }
+                }
+            } catch (IOException e) {
+                // Either side closed
+            } finally {
+                close();
+            }
+        }
+
+        void close() {
+            closeQuietly(client);
+            closeQuietly(backend);
+            if (room.relays.remove(this) && room.relays.isEmpty()) {
+                room.emptySince = System.currentTimeMillis();
+            }
+        }
+    }
+}
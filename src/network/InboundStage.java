@@ -0,0 +1,147 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Per-connection buffer between a client's reader thread and the game state.
+ * The reader offers each game message here instead of taking the server's state
+ * lock; once per tick the server drains every stage under a single lock hold.
+ * Player states are coalesced (only the newest one per tick is applied), food
+ * events and resets are batched in order, and a RESET_FOODS discards food eaten
+ * before it (the reset clears those pellets anyway).
+ *
+ * Two token buckets, one for messages and one for bytes, cap the player
+ * states a single connection can push. States over the limit are dropped and
+ * counted, so a flooding client only loses its own updates; the next state
+ * replaces a dropped one anyway. Food events and resets cannot be replaced, so
+ * a dropped one would leave its pellet out of sync for the room: they have a
+ * bucket of their own, sized for a whole board eaten in a burst.
+ */
+final class InboundStage {
+    static final double MESSAGES_PER_SECOND = 100; // A well-behaved client sends at most ~40
+    static final double MESSAGE_BURST = 200;
+    static final double BYTES_PER_SECOND = 32 * 1024;
+    static final double BYTE_BURST = 64 * 1024;
+    static final double FOOD_EVENTS_PER_SECOND = 50; // Pac-Man eats well under 20 pellets a second
+    static final double FOOD_EVENT_BURST = 500;      // More than the pellets on a board
+    static final int MAX_FOOD_EVENT_LENGTH = 64;     // FOOD:x,y@epoch or RESET_FOODS:epoch
+
+    private final TokenBucket messageBucket = new TokenBucket(MESSAGES_PER_SECOND, MESSAGE_BURST);
+    private final TokenBucket byteBucket = new TokenBucket(BYTES_PER_SECOND, BYTE_BURST);
+    private final TokenBucket foodBucket = new TokenBucket(FOOD_EVENTS_PER_SECOND, FOOD_EVENT_BURST);
+    private final ReentrantLock lock = new ReentrantLock();
+
+    // Pending input, guarded by lock
+    private String latestState = null;
+    private List<String> foods = new ArrayList<>();          // FOOD and RESET_FOODS events in arrival order
+    private List<String> spareFoods = new ArrayList<>(); // Swapped in on drain, only touched by the draining thread
+    private boolean closed = false;
+
+    // Counters for the admin console
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Reader thread: queues a game message for the next tick
+     * @return false if the rate limit dropped it
+     */
+    boolean offer(String message) {
+        boolean foodEvent = message.startsWith(Protocol.FOOD) || message.startsWith(Protocol.RESET_FOODS);
+        if (!(foodEvent ? allowFoodEvent(message) : allowState(message))) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        accepted.incrementAndGet();
+        lock.lock();
+        try {
+            if (closed) return true;
+            if (message.startsWith(Protocol.RESET_FOODS)) {
+                int before = foods.size();
+                foods.removeIf(event -> event.startsWith(Protocol.FOOD));
+                coalesced.addAndGet(before - foods.size());
+                foods.add(message);
+            } else if (message.startsWith(Protocol.FOOD)) {
+                foods.add(message);
+            } else {
+                if (latestState != null) coalesced.incrementAndGet();
+                latestState = message;
+            }
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    private boolean allowFoodEvent(String message) {
+        return message.length() <= MAX_FOOD_EVENT_LENGTH && foodBucket.tryTake(1);
+    }
+
+    /**
+     * Takes from both buckets only if both allow the state, so a state the byte
+     * limit rejects does not also use up a message token
+     */
+    private boolean allowState(String message) {
+        int bytes = message.length() + 1;
+        if (!messageBucket.available(1) || !byteBucket.available(bytes)) return false;
+        messageBucket.take(1);
+        byteBucket.take(bytes);
+        return true;
+    }
+
+    /**
+     * Tick thread, with the server state lock held: hands pending input to the
+     * game state in order (food events, then the newest player state)
+     */
+    void drainTo(Consumer<String> apply) {
+        String state;
+        List<String> batch;
+        lock.lock();
+        try {
+            if (latestState == null && foods.isEmpty()) return;
+            state = latestState;
+            batch = foods;
+            foods = spareFoods;
+            spareFoods = batch;
+            latestState = null;
+        } finally {
+            lock.unlock();
+        }
+        for (String food : batch) {
+            apply.accept(food);
+        }
+        batch.clear();
+        if (state != null) {
+            apply.accept(state);
+        }
+    }
+
+    /**
+     * Discards pending input and ignores later offers; called before the player is removed
+     */
+    void close() {
+        lock.lock();
+        try {
+            closed = true;
+            latestState = null;
+            foods.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return Counters as "accepted a, coalesced c, dropped d"
+     */
+    String summary() {
+        return "accepted " + accepted.get() + ", coalesced " + coalesced.get() + ", dropped " + dropped.get();
+    }
+
+    long getDropped() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,108 @@
+package network;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Fixed-bucket latency histogram with allocation-free recording.
+ * Values are microseconds. The first 16 buckets are exact; above that every
+ * power of two is split into 8 buckets, so reported percentiles are within
+ * 12.5% of the true value up to about 17 minutes. Recording is a few atomic
+ * increments and is safe from any thread; reads are approximate snapshots.
+ */
+public class LatencyHistogram {
+    private static final int LINEAR_BUCKETS = 16;
+    private static final int SUB_BUCKET_BITS = 3;  // 8 buckets per power of two
+    private static final int MAX_EXPONENT = 29;    // Values are clamped below 2^30 us
+    private static final int BUCKET_COUNT =
+            LINEAR_BUCKETS + ((MAX_EXPONENT - 3) << SUB_BUCKET_BITS);
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one sample; negative values count as zero
+     * @param micros Latency in microseconds
+     */
+    public void record(long micros) {
+        long value = Math.max(0, Math.min(micros, (1L << (MAX_EXPONENT + 1)) - 1));
+        buckets.incrementAndGet(bucketOf(value));
+        count.incrementAndGet();
+        sum.addAndGet(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    private static int bucketOf(long value) {
+        if (value < LINEAR_BUCKETS) return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & ((1 << SUB_BUCKET_BITS) - 1);
+        return LINEAR_BUCKETS + ((exponent - 4) << SUB_BUCKET_BITS) + sub;
+    }
+
+    /**
+     * @return Smallest value that falls into the bucket
+     */
+    private static long lowerBound(int bucket) {
+        if (bucket < LINEAR_BUCKETS) return bucket;
+        int exponent = ((bucket - LINEAR_BUCKETS) >> SUB_BUCKET_BITS) + 4;
+        int sub = (bucket - LINEAR_BUCKETS) & ((1 << SUB_BUCKET_BITS) - 1);
+        return (long) ((1 << SUB_BUCKET_BITS) + sub) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long n = count.get();
+        return (n == 0) ? 0 : (double) sum.get() / n;
+    }
+
+    /**
+     * @param quantile 0..1, e.g. 0.99
+     * @return Approximate value in microseconds (bucket midpoint), 0 if empty
+     */
+    public long percentile(double quantile) {
+        long n = count.get();
+        if (n == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += buckets.get(i);
+            if (seen >= rank) {
+                long low = lowerBound(i);
+                long high = (i + 1 < BUCKET_COUNT) ? lowerBound(i + 1) : low;
+                return Math.min((low + high) / 2, max.get());
+            }
+        }
+        return max.get();
+    }
+
+    /**
+     * Clears all samples (concurrent records may be partly lost)
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets.set(i, 0);
+        }
+        count.set(0);
+        sum.set(0);
+        max.set(0);
+    }
+
+    /**
+     * @return One-line summary in milliseconds
+     */
+    public String summary() {
+        if (count.get() == 0) return "no samples";
+        return String.format("n=%d p50 %.1f p95 %.1f p99 %.1f max %.1f ms", getCount(),
+                percentile(0.50) / 1000.0, percentile(0.95) / 1000.0,
+                percentile(0.99) / 1000.0, getMax() / 1000.0);
+    }
+}
@@ -0,0 +1,216 @@
+package network;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional deflate compression of server-to-client lines, negotiated in the
+ * handshake (HELLO+deflate). Each connection keeps one streaming deflate
+ * context, so a snapshot compresses against every line sent before it: player
+ * UUIDs and pellet coordinates repeat from tick to tick. Both ends start from
+ * the same preset dictionary of protocol tokens and board coordinates.
+ *
+ * A compressed line travels as "Z:" plus base64, which keeps the transport
+ * line-oriented (gateways and shared memory relay it untouched). Short lines
+ * are sent as they are, and the encoder switches itself off for good once a
+ * sample shows it saves too little or costs too much CPU per byte saved; the
+ * decoder accepts plain and compressed lines in any mix.
+ */
+final class LineCompression {
+    static final int MIN_LINE = 96; // Shorter lines are not worth the base64 overhead
+
+    // Board of the 32 px client: 19 x 21 tiles, pellets 14 px into their tile
+    private static final int TILE_SIZE = 32;
+    private static final int PELLET_OFFSET = 14;
+    private static final int COLUMNS = 19;
+    private static final int ROWS = 21;
+
+    private static final byte[] DICTIONARY = buildDictionary();
+
+    // A SYNC_FLUSH always ends with this empty stored block; it is cut off on the wire
+    private static final byte[] SYNC_TAIL = {0, 0, (byte) 0xFF, (byte) 0xFF};
+
+    private LineCompression() {}
+
+    /**
+     * Pellet coordinates first and the most frequent tokens last, since deflate
+     * encodes nearer matches in fewer bits
+     */
+    private static byte[] buildDictionary() {
+        StringBuilder dictionary = new StringBuilder();
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS; column++) {
+                dictionary.append(column * TILE_SIZE + PELLET_OFFSET).append(',')
+                        .append(row * TILE_SIZE + PELLET_OFFSET).append(Protocol.ENTRY_SEPARATOR);
+            }
+        }
+        dictionary.append(Protocol.TIME_SYNC).append(Protocol.PING).append(Protocol.FRAME)
+                .append(",true").append(",0,false;,1,false;,2,false;,3,false;")
+                .append(",U,").append(",D,").append(",L,").append(",R,").append(Protocol.SECTION_SEPARATOR);
+        return dictionary.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Compresses one connection's outbound lines. Owned by the connection's
+     * writer thread; the counters may be read from any thread.
+     */
+    static final class Encoder {
+        private static final int SAMPLE_LINES = 200;     // Compressed lines per pay-off check
+        private static final double MAX_RATIO = 0.8;     // Must save at least 20% of the bytes...
+        private static final long MAX_NANOS_PER_SAVED_KB = 1_000_000; // ...at under 1 ms CPU per KB saved
+
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private byte[] output = new byte[1024];
+        private boolean enabled = true;
+
+        // Current sample window
+        private long windowRaw = 0;
+        private long windowWire = 0;
+        private long windowNanos = 0;
+        private int windowLines = 0;
+
+        // Totals of compressed lines, for the admin console
+        private volatile long rawBytes = 0;
+        private volatile long wireBytes = 0;
+        private volatile long cpuNanos = 0;
+        private volatile long lines = 0;
+        private volatile String disabledReason = null;
+
+        Encoder() {
+            deflater.setDictionary(DICTIONARY);
+        }
+
+        /**
+         * @return The line to send: compressed, or unchanged if it is short or compression is off
+         */
+        String encode(String line) {
+            if (!enabled || line.length() < MIN_LINE) return line;
+            long start = System.nanoTime();
+            byte[] raw = line.getBytes(StandardCharsets.UTF_8);
+            deflater.setInput(raw);
+            int length = 0;
+            do {
+                if (length == output.length) {
+                    output = Arrays.copyOf(output, output.length * 2);
+                }
+                length += deflater.deflate(output, length, output.length - length, Deflater.SYNC_FLUSH);
+            } while (length == output.length);
+            String wire = Protocol.COMPRESSED + Base64.getEncoder()
+                    .encodeToString(Arrays.copyOf(output, length - SYNC_TAIL.length));
+            long nanos = System.nanoTime() - start;
+
+            rawBytes += raw.length + 1;
+            wireBytes += wire.length() + 1;
+            cpuNanos += nanos;
+            lines++;
+            windowRaw += raw.length + 1;
+            windowWire += wire.length() + 1;
+            windowNanos += nanos;
+            if (++windowLines == SAMPLE_LINES) {
+                checkPayoff();
+            }
+            return wire;
+        }
+
+        /**
+         * Ends the sample window, switching compression off if it did not pay
+         */
+        private void checkPayoff() {
+            long saved = windowRaw - windowWire;
+            if (windowWire > windowRaw * MAX_RATIO) {
+                disable(String.format("ratio %.2f", (double) windowWire / windowRaw));
+            } else if (windowNanos * 1024 > saved * MAX_NANOS_PER_SAVED_KB) {
+                disable((windowNanos * 1024 / saved / 1000) + " us per KB saved");
+            }
+            windowRaw = windowWire = windowNanos = 0;
+            windowLines = 0;
+        }
+
+        private void disable(String reason) {
+            enabled = false;
+            disabledReason = reason;
+            deflater.end();
+        }
+
+        /**
+         * Releases the native deflate state; called when the writer stops
+         */
+        void end() {
+            enabled = false;
+            deflater.end();
+        }
+
+        /**
+         * @return Counters as "lines n, ratio r, cpu c ms (on|off: reason)"
+         */
+        String summary() {
+            long raw = rawBytes;
+            String state = (disabledReason != null) ? "off: " + disabledReason : "on";
+            return String.format("lines %d, ratio %.2f, cpu %.1f ms (%s)",
+                    lines, (raw == 0) ? 1.0 : (double) wireBytes / raw, cpuNanos / 1e6, state);
+        }
+
+        long rawBytes() {
+            return rawBytes;
+        }
+
+        long wireBytes() {
+            return wireBytes;
+        }
+    }
+
+    /**
+     * Restores compressed lines on the receiving side; used by the reader thread only
+     */
+    static final class Decoder {
+        private final Inflater inflater = new Inflater(true);
+        private byte[] output = new byte[4096];
+
+        Decoder() {
+            inflater.setDictionary(DICTIONARY);
+        }
+
+        /**
+         * @return The original line, or the line itself if it is not compressed
+         * @throws IOException if the line does not continue this connection's stream
+         */
+        String decode(String line) throws IOException {
+            if (!line.startsWith(Protocol.COMPRESSED)) return line;
+            byte[] data;
+            try {
+                data = Base64.getDecoder().decode(line.substring(Protocol.COMPRESSED.length()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Malformed compressed line", e);
+            }
+            byte[] input = Arrays.copyOf(data, data.length + SYNC_TAIL.length);
+            System.arraycopy(SYNC_TAIL, 0, input, data.length, SYNC_TAIL.length);
+            inflater.setInput(input);
+            int length = 0;
+            try {
+                int inflated;
+                do {
+                    if (length == output.length) {
+                        output = Arrays.copyOf(output, output.length * 2);
+                    }
+                    inflated = inflater.inflate(output, length, output.length - length);
+                    length += inflated;
+                } while ((inflated > 0 || !inflater.needsInput()) && !inflater.finished());
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt compressed line", e);
+            }
+            return new String(output, 0, length, StandardCharsets.UTF_8);
+        }
+
+        /**
+         * Releases the native inflate state
+         */
+        void end() {
+            inflater.end();
+        }
+    }
+}
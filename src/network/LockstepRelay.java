@@ -0,0 +1,240 @@
+package network;
+
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Server side of the deterministic lockstep mode.
+ * Clients only upload direction changes; the relay stamps them onto the next
+ * tick and broadcasts one input frame per tick. Clients periodically upload
+ * their world; an upload no other client contradicted within CHECKSUM_HISTORY
+ * ticks becomes the match snapshot. Frames with entries since that snapshot are
+ * logged, so late joiners and resuming clients start from the snapshot and only
+ * replay a bounded window. Periodic checksums are compared to detect desyncs.
+ */
+class LockstepRelay {
+    private static final int CHECKSUM_HISTORY = 50; // Ticks of checksums kept for comparison
+    private static final int MAX_WORLD_LENGTH = 16 * 1024; // Longest accepted WORLD upload
+
+    private record Frame(long tick, String line) {}
+
+    private final long seed;
+    private final long tickMs;
+    private final Consumer<String> broadcaster;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<String, Integer> playerNumbers = new HashMap<>(); // Player ID -> number in simulation
+    private final StringBuilder pending = new StringBuilder(); // Entries for the next tick
+    private final List<Frame> history = new ArrayList<>();   // Non-empty frames after the snapshot only
+    private final NavigableMap<Long, String> uploadedWorlds = new TreeMap<>(); // Tick -> first WORLD upload
+    private String snapshot;        // WORLD line late joiners start from, null until one is confirmed
+    private long snapshotTick = -1;
+    private final NavigableMap<Long, Long> checksums = new TreeMap<>(); // Tick -> first reported hash
+    private final Set<Long> reportedDesyncs = new HashSet<>();
+    private ScheduledExecutorService ticker;
+    private long tick = 0;
+    private int nextPlayerNumber = 1;
+
+    /**
+     * @param seed Seed shared by every client's simulation
+     * @param tickMs Simulation tick length
+     * @param broadcaster Sends a line to every ready client
+     */
+    LockstepRelay(long seed, long tickMs, Consumer<String> broadcaster) {
+        this.seed = seed;
+        this.tickMs = tickMs;
+        this.broadcaster = broadcaster;
+    }
+
+    void start() {
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "lockstep-ticker");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    void stop() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * Adds a player (or finds a resuming one) and sends it the lockstep setup,
+     * the snapshot if the client is older than it, and the logged frames it has
+     * not seen. Runs under the relay lock so no live frame can slip in between
+     * the replay and the first live frame.
+     * @param lastTick Last frame tick the client applied, -1 for a new client
+     * @param send Queues a line to this client
+     * @param ready Marks the client ready for live frames
+     */
+    void attach(String playerId, long lastTick, Consumer<String> send, Runnable ready) {
+        lock.lock();
+        try {
+            Integer number = playerNumbers.get(playerId);
+            if (number == null) {
+                number = nextPlayerNumber++;
+                playerNumbers.put(playerId, number);
+                addEntry(String.valueOf(Protocol.FRAME_JOIN) + number);
+            }
+            send.accept(Protocol.LOCKSTEP + seed + "," + tickMs + "," + number + "," + tick);
+            long replayAfter = lastTick;
+            if (snapshot != null && lastTick < snapshotTick) {
+                send.accept(snapshot);
+                replayAfter = snapshotTick;
+            }
+            for (Frame frame : history) {
+                if (frame.tick() > replayAfter) {
+                    send.accept(frame.line());
+                }
+            }
+            ready.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a player from the simulation on the next tick
+     */
+    void detach(String playerId) {
+        lock.lock();
+        try {
+            Integer number = playerNumbers.remove(playerId);
+            if (number != null) {
+                addEntry(String.valueOf(Protocol.FRAME_LEAVE) + number);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Handles a lockstep client message (IN:, SUM: or WORLD:); other lines are ignored
+     */
+    void handle(String playerId, String message) {
+        if (message.startsWith(Protocol.INPUT)) {
+            int comma = message.lastIndexOf(',');
+            if (comma < 0 || comma != message.length() - 2) return;
+            char action = message.charAt(comma + 1);
+            if ("UDLR".indexOf(action) < 0 && action != Protocol.INPUT_RESTART) return;
+            lock.lock();
+            try {
+                Integer number = playerNumbers.get(playerId);
+                if (number != null) {
+                    addEntry(number + String.valueOf(action));
+                }
+            } finally {
+                lock.unlock();
+            }
+        } else if (message.startsWith(Protocol.CHECKSUM)) {
+            String[] parts = message.substring(Protocol.CHECKSUM.length()).split(",");
+            try {
+                compareChecksum(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                System.err.println("Malformed checksum from " + playerId + ": " + message);
+            }
+        } else if (message.startsWith(Protocol.WORLD)) {
+            try {
+                offerWorld(playerId, Protocol.parseWorldTick(message), message);
+            } catch (NumberFormatException e) {
+                System.err.println("Malformed world from " + playerId);
+            }
+        }
+    }
+
+    /**
+     * Records a client's world as snapshot candidate. Uploads for the same tick
+     * must match; a conflicting one is a desync and discards the candidate.
+     */
+    private void offerWorld(String playerId, long worldTick, String line) {
+        if (line.length() > MAX_WORLD_LENGTH) return;
+        lock.lock();
+        try {
+            if (!playerNumbers.containsKey(playerId) || worldTick <= snapshotTick || worldTick > tick
+                    || worldTick < tick - CHECKSUM_HISTORY || reportedDesyncs.contains(worldTick)) {
+                return;
+            }
+            String first = uploadedWorlds.putIfAbsent(worldTick, line);
+            if (first != null && !first.equals(line)) {
+                uploadedWorlds.remove(worldTick);
+                reportDesync(worldTick);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void compareChecksum(long reportedTick, long hash) {
+        lock.lock();
+        try {
+            if (reportedTick < tick - CHECKSUM_HISTORY) return; // Too old to compare
+            Long expected = checksums.putIfAbsent(reportedTick, hash);
+            if (expected != null && expected != hash) {
+                uploadedWorlds.remove(reportedTick);
+                reportDesync(reportedTick);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void reportDesync(long desyncTick) {
+        if (reportedDesyncs.add(desyncTick)) {
+            System.err.println("Lockstep desync at tick " + desyncTick);
+            broadcaster.accept(Protocol.DESYNC + desyncTick);
+        }
+    }
+
+    /**
+     * Promotes uploads that stayed uncontradicted for CHECKSUM_HISTORY ticks
+     * to the snapshot and drops the frames it already contains
+     */
+    private void confirmWorlds() {
+        Map.Entry<Long, String> oldest;
+        while ((oldest = uploadedWorlds.firstEntry()) != null && oldest.getKey() <= tick - CHECKSUM_HISTORY) {
+            uploadedWorlds.pollFirstEntry();
+            snapshotTick = oldest.getKey();
+            snapshot = oldest.getValue();
+            history.removeIf(frame -> frame.tick() <= snapshotTick);
+        }
+    }
+
+    private void addEntry(String entry) {
+        if (pending.length() > 0) pending.append(',');
+        pending.append(entry);
+    }
+
+    /**
+     * Closes the current tick and broadcasts its input frame
+     */
+    private void tick() {
+        lock.lock();
+        try {
+            tick++;
+            String line;
+            if (pending.length() > 0) {
+                line = Protocol.FRAME + tick + ":" + pending;
+                history.add(new Frame(tick, line));
+                pending.setLength(0);
+            } else {
+                line = Protocol.FRAME + tick;
+            }
+            broadcaster.accept(line);
+
+            confirmWorlds();
+            // Forget checksums that can no longer be compared
+            checksums.headMap(tick - CHECKSUM_HISTORY).clear();
+            reportedDesyncs.removeIf(t -> t < tick - CHECKSUM_HISTORY);
+        } catch (RuntimeException e) {
+            System.err.println("Lockstep tick failed: " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+}
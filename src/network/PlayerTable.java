@@ -0,0 +1,216 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Server-side player state stored as parallel primitive arrays indexed by slot.
+ * States are parsed once when they arrive, per-slot dirty bits record which
+ * fields changed, and snapshots are encoded by walking the flat arrays. Each
+ * slot's encoded entry is cached and only rebuilt while the slot is dirty, so
+ * a tick re-encodes just the players that changed since the last broadcast.
+ * Not thread-safe: callers hold the server state lock.
+ */
+class PlayerTable {
+    // Dirty bits
+    static final int DIRTY_POSITION = 1;
+    static final int DIRTY_DIRECTION = 1 << 1;
+    static final int DIRTY_SCORE = 1 << 2;
+    static final int DIRTY_LIVES = 1 << 3;
+    static final int DIRTY_GAME_OVER = 1 << 4;
+    static final int DIRTY_PRESENCE = 1 << 5; // Joined or left
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private final Map<String, Integer> slotById = new HashMap<>();
+    private int[] freeSlots = new int[INITIAL_CAPACITY];
+    private int freeCount = 0;
+    private int highWater = 0;
+
+    private String[] ids = new String[INITIAL_CAPACITY];
+    private boolean[] present = new boolean[INITIAL_CAPACITY]; // Slot holds a reported state
+    private int[] x = new int[INITIAL_CAPACITY];
+    private int[] y = new int[INITIAL_CAPACITY];
+    private char[] direction = new char[INITIAL_CAPACITY];
+    private int[] score = new int[INITIAL_CAPACITY];
+    private int[] lives = new int[INITIAL_CAPACITY];
+    private boolean[] gameOver = new boolean[INITIAL_CAPACITY];
+    private int[] dirty = new int[INITIAL_CAPACITY];
+    private String[] entries = new String[INITIAL_CAPACITY]; // Encoded entry, stale while the slot is dirty
+    private int dirtyCount = 0; // Slots with at least one dirty bit
+
+    /**
+     * Finds or allocates the slot for a player
+     */
+    int acquire(String playerId) {
+        Integer existing = slotById.get(playerId);
+        if (existing != null) return existing;
+
+        int slot = (freeCount > 0) ? freeSlots[--freeCount] : highWater++;
+        if (slot >= ids.length) {
+            grow(ids.length * 2);
+        }
+        ids[slot] = playerId;
+        present[slot] = false;
+        slotById.put(playerId, slot);
+        return slot;
+    }
+
+    /**
+     * Frees a player's slot
+     * @return true if the player was visible in snapshots
+     */
+    boolean release(String playerId) {
+        Integer slot = slotById.remove(playerId);
+        if (slot == null) return false;
+        boolean wasPresent = present[slot];
+        ids[slot] = null;
+        present[slot] = false;
+        entries[slot] = null;
+        clearDirty(slot);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeSlots.length * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        return wasPresent;
+    }
+
+    /**
+     * Parses a PLAYER_STATE line (playerId,x,y,direction,score,lives,gameOver)
+     * into the slot. Fields after gameOver are ignored.
+     * @return Dirty bits set by this update, 0 if nothing changed
+     * @throws IllegalArgumentException if the line is malformed
+     */
+    int update(int slot, String state) {
+        int pos = state.indexOf(',') + 1; // Skip the client-reported ID
+        if (pos == 0) throw new IllegalArgumentException("Missing fields");
+
+        int end = fieldEnd(state, pos);
+        int newX = Integer.parseInt(state, pos, end, 10);
+        pos = end + 1;
+        end = fieldEnd(state, pos);
+        int newY = Integer.parseInt(state, pos, end, 10);
+        pos = end + 1;
+        end = fieldEnd(state, pos);
+        if (end - pos != 1) throw new IllegalArgumentException("Bad direction");
+        char newDirection = state.charAt(pos);
+        pos = end + 1;
+        end = fieldEnd(state, pos);
+        int newScore = Integer.parseInt(state, pos, end, 10);
+        pos = end + 1;
+        end = fieldEnd(state, pos);
+        int newLives = Integer.parseInt(state, pos, end, 10);
+        pos = end + 1;
+        end = fieldEnd(state, pos);
+        boolean newGameOver = state.regionMatches(pos, "true", 0, Math.max(4, end - pos));
+
+        int changed = 0;
+        if (!present[slot]) {
+            present[slot] = true;
+            changed |= DIRTY_PRESENCE;
+        }
+        if (x[slot] != newX || y[slot] != newY) changed |= DIRTY_POSITION;
+        if (direction[slot] != newDirection) changed |= DIRTY_DIRECTION;
+        if (score[slot] != newScore) changed |= DIRTY_SCORE;
+        if (lives[slot] != newLives) changed |= DIRTY_LIVES;
+        if (gameOver[slot] != newGameOver) changed |= DIRTY_GAME_OVER;
+
+        x[slot] = newX;
+        y[slot] = newY;
+        direction[slot] = newDirection;
+        score[slot] = newScore;
+        lives[slot] = newLives;
+        gameOver[slot] = newGameOver;
+        markDirty(slot, changed);
+        return changed;
+    }
+
+    private static int fieldEnd(String state, int from) {
+        if (from > state.length()) throw new IllegalArgumentException("Missing fields");
+        int end = state.indexOf(',', from);
+        return (end < 0) ? state.length() : end;
+    }
+
+    /**
+     * Appends all reported players as PLAYER_STATE entries separated by ';'
+     */
+    void encode(StringBuilder out) {
+        boolean first = true;
+        for (int slot = 0; slot < highWater; slot++) {
+            if (!present[slot]) continue;
+            if (!first) out.append(Protocol.ENTRY_SEPARATOR);
+            first = false;
+            out.append(entry(slot));
+        }
+    }
+
+    /**
+     * Copies the reported players into detached arrays
+     * @param idsOut Receives the player IDs, parallel to the returned entries
+     * @return One encoded PLAYER_STATE entry per reported player
+     */
+    String[] encodeEntries(List<String> idsOut) {
+        List<String> encoded = new ArrayList<>();
+        for (int slot = 0; slot < highWater; slot++) {
+            if (!present[slot]) continue;
+            encoded.add(entry(slot));
+            idsOut.add(ids[slot]);
+        }
+        return encoded.toArray(new String[0]);
+    }
+
+    /**
+     * @return The slot's PLAYER_STATE entry, re-encoded only if the slot is dirty
+     */
+    private String entry(int slot) {
+        if (dirty[slot] == 0 && entries[slot] != null) {
+            return entries[slot];
+        }
+        StringBuilder out = new StringBuilder(64);
+        out.append(ids[slot]).append(',')
+                .append(x[slot]).append(',')
+                .append(y[slot]).append(',')
+                .append(direction[slot]).append(',')
+                .append(score[slot]).append(',')
+                .append(lives[slot]).append(',')
+                .append(gameOver[slot]);
+        entries[slot] = out.toString();
+        return entries[slot];
+    }
+
+    /**
+     * Clears all dirty bits after a broadcast
+     */
+    void clearAllDirty() {
+        if (dirtyCount == 0) return;
+        Arrays.fill(dirty, 0, highWater, 0);
+        dirtyCount = 0;
+    }
+
+    private void markDirty(int slot, int bits) {
+        if (bits == 0) return;
+        if (dirty[slot] == 0) dirtyCount++;
+        dirty[slot] |= bits;
+    }
+
+    private void clearDirty(int slot) {
+        if (dirty[slot] != 0) dirtyCount--;
+        dirty[slot] = 0;
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        present = Arrays.copyOf(present, capacity);
+        x = Arrays.copyOf(x, capacity);
+        y = Arrays.copyOf(y, capacity);
+        direction = Arrays.copyOf(direction, capacity);
+        score = Arrays.copyOf(score, capacity);
+        lives = Arrays.copyOf(lives, capacity);
+        gameOver = Arrays.copyOf(gameOver, capacity);
+        dirty = Arrays.copyOf(dirty, capacity);
+        entries = Arrays.copyOf(entries, capacity);
+    }
+}
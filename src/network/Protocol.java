@@ -0,0 +1,225 @@
+package network;
+
+/**
+ * Shared message constants for the line-based game protocol.
+ * Both the server and the game client build and parse messages through these
+ * tokens so the wire format is defined in one place.
+ */
+public final class Protocol {
+    // Handshake (client -> server, first line of every connection)
+    public static final String HELLO = "HELLO";          // New session
+    public static final String RESUME = "RESUME:";       // RESUME:token,lastSeq
+    public static final String BYE = "BYE";              // Graceful leave, drops the session at once
+    public static final String OPTION_SEPARATOR = "+";   // HELLO+deflate or RESUME:token,lastSeq+deflate
+    public static final String DEFLATE = "deflate";      // Offers compression; an accepting server appends #deflate
+    public static final String COMPRESSED = "Z:";        // Server -> client: Z:base64 of a deflated line
+
+    // Heartbeat
+    public static final String PING = "PING";            // Server -> client after a quiet period
+    public static final String PONG = "PONG";            // Client -> server reply
+
+    // Clock sync (either direction): TSYNC:t0 is answered with TSYNC:t0,peerWallMillis.
+    // t0 is the sender's monotonic clock and only echoed back.
+    public static final String TIME_SYNC = "TSYNC:";
+
+    // Game messages (client -> server); the @epoch and :epoch tags are optional
+    public static final String RESET_FOODS = "RESET_FOODS";  // RESET_FOODS:epoch starts the level after epoch
+    public static final String FOOD = "FOOD:";            // FOOD:x,y@epoch
+    public static final String EPOCH_TAG = "@";
+
+    // Lockstep mode
+    public static final String LOCKSTEP = "LOCKSTEP:";   // Server -> client after handshake: seed,tickMs,playerNo,tick
+    public static final String FRAME = "FRAME:";         // Server -> client per tick: FRAME:tick:entry,entry
+    public static final String INPUT = "IN:";            // Client -> server: IN:clientTick,direction
+    public static final String CHECKSUM = "SUM:";        // Client -> server: SUM:tick,hash
+    public static final String DESYNC = "DESYNC:";       // Server -> client: DESYNC:tick
+    public static final String WORLD = "WORLD:";         // Both ways: WORLD:tick:state, world after the tick
+    public static final char FRAME_JOIN = 'J';           // Frame entry J<playerNo>
+    public static final char FRAME_LEAVE = 'L';          // Frame entry L<playerNo>
+    public static final char INPUT_RESTART = 'S';        // Input/frame entry <playerNo>S
+
+    // Cluster control (gateway -> backend control port, one reply line per command)
+    public static final String ROOM_HELLO = "HELLO:";    // Client -> gateway: HELLO:room joins a named room
+    public static final String OPEN_ROOM = "OPEN:";      // OPEN:room -> OK:port
+    public static final String CLOSE_ROOM = "CLOSE:";    // CLOSE:room -> OK
+    public static final String EXPORT_ROOM = "EXPORT:";  // EXPORT:room -> STATE:players#foods#seq#sessions#epoch
+    public static final String IMPORT_ROOM = "IMPORT:";  // IMPORT:room:state -> OK:port
+    public static final String METRICS = "METRICS";      // METRICS -> METRICS:rooms,clients,cpuPercent,heapMb
+    public static final String REPLY_OK = "OK";
+    public static final String REPLY_STATE = "STATE:";
+    public static final String REPLY_ERROR = "ERR:";
+
+    // Snapshot layout (server -> client): players#foods#seq#serverMillis#epoch
+    public static final String SECTION_SEPARATOR = "#";
+    public static final String ENTRY_SEPARATOR = ";";
+
+    private Protocol() {}
+
+    /**
+     * Builds a resume request for the handshake
+     * @param token Resume token received in an earlier handshake
+     * @param lastSeq Last snapshot sequence number applied by the client
+     */
+    public static String resume(String token, long lastSeq) {
+        return RESUME + token + "," + lastSeq;
+    }
+
+    /**
+     * Builds a pellet event for the level the sender currently shows
+     * @param x Pellet x in pixels
+     * @param y Pellet y in pixels
+     */
+    public static String foodEaten(int x, int y, long epoch) {
+        return FOOD + x + "," + y + EPOCH_TAG + epoch;
+    }
+
+    /**
+     * Builds a reset request for the level the sender has just cleared
+     */
+    public static String resetFoods(long epoch) {
+        return RESET_FOODS + ":" + epoch;
+    }
+
+    /**
+     * @return Position "x,y" of a FOOD event, without its epoch tag
+     */
+    public static String parseFoodPosition(String event) {
+        int tag = event.indexOf(EPOCH_TAG, FOOD.length());
+        return event.substring(FOOD.length(), (tag < 0) ? event.length() : tag);
+    }
+
+    /**
+     * Extracts the epoch tag of a FOOD or RESET_FOODS event
+     * @return Epoch, or -1 if the event is untagged or the tag is malformed
+     */
+    public static long parseEventEpoch(String event) {
+        int tag = event.startsWith(RESET_FOODS) ? RESET_FOODS.length() : event.indexOf(EPOCH_TAG);
+        if (tag < 0 || tag + 1 >= event.length()) return -1;
+        try {
+            return Long.parseLong(event, tag + 1, event.length(), 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Extracts the food epoch section of a snapshot
+     * @return Epoch, or -1 if the snapshot carries none
+     */
+    public static long parseEpoch(String snapshot) {
+        String[] sections = snapshot.split(SECTION_SEPARATOR, -1);
+        if (sections.length < 5 || sections[4].isEmpty()) return -1;
+        try {
+            return Long.parseLong(sections[4]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Adds the compression offer to a handshake line
+     */
+    public static String offerDeflate(String hello) {
+        return hello + OPTION_SEPARATOR + DEFLATE;
+    }
+
+    /**
+     * @return true if a handshake line offers compression
+     */
+    public static boolean offersDeflate(String hello) {
+        return hello.endsWith(OPTION_SEPARATOR + DEFLATE);
+    }
+
+    /**
+     * @return Handshake line without its options
+     */
+    public static String withoutOptions(String hello) {
+        int options = hello.indexOf(OPTION_SEPARATOR);
+        return (options < 0) ? hello : hello.substring(0, options);
+    }
+
+    /**
+     * Builds a clock sync request stamped with the local monotonic clock
+     */
+    public static String timeSyncRequest() {
+        return TIME_SYNC + System.nanoTime();
+    }
+
+    /**
+     * Answers a clock sync request, or returns null if the line is a reply
+     */
+    public static String timeSyncReply(String request) {
+        if (request.indexOf(',') >= 0) return null;
+        return request + "," + System.currentTimeMillis();
+    }
+
+    /**
+     * Result of a clock sync round trip
+     * @param rttMicros Round-trip time
+     * @param offsetMillis Peer wall clock minus local wall clock
+     */
+    public record TimeSample(long rttMicros, long offsetMillis) {}
+
+    /**
+     * Evaluates a clock sync reply, assuming the peer stamped it halfway through the round trip
+     * @return Sample, or null if the line is malformed
+     */
+    public static TimeSample parseTimeSyncReply(String reply) {
+        long now = System.nanoTime();
+        int comma = reply.indexOf(',');
+        if (comma < 0) return null;
+        try {
+            long sentNanos = Long.parseLong(reply, TIME_SYNC.length(), comma, 10);
+            long peerMillis = Long.parseLong(reply, comma + 1, reply.length(), 10);
+            long rttMicros = (now - sentNanos) / 1000;
+            long offset = peerMillis - (System.currentTimeMillis() - rttMicros / 2000);
+            return new TimeSample(rttMicros, offset);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @return Tick number of a FRAME line
+     */
+    public static long parseFrameTick(String frame) {
+        int end = frame.indexOf(':', FRAME.length());
+        return Long.parseLong(frame, FRAME.length(), (end < 0) ? frame.length() : end, 10);
+    }
+
+    /**
+     * @return Tick number of a WORLD line
+     */
+    public static long parseWorldTick(String world) {
+        int end = world.indexOf(':', WORLD.length());
+        return Long.parseLong(world, WORLD.length(), (end < 0) ? world.length() : end, 10);
+    }
+
+    /**
+     * Extracts the sequence number section of a snapshot
+     * @return Sequence number or -1 if the snapshot carries none
+     */
+    public static long parseSequence(String snapshot) {
+        String[] sections = snapshot.split(SECTION_SEPARATOR, -1);
+        if (sections.length < 3 || sections[2].isEmpty()) return -1;
+        try {
+            return Long.parseLong(sections[2]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Extracts the server timestamp section of a snapshot
+     * @return Server wall clock in milliseconds or -1 if the snapshot carries none
+     */
+    public static long parseServerTime(String snapshot) {
+        String[] sections = snapshot.split(SECTION_SEPARATOR, -1);
+        if (sections.length < 4 || sections[3].isEmpty()) return -1;
+        try {
+            return Long.parseLong(sections[3]);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package network;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.OperatingSystemMXBean;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Backend process of a server cluster. Each room is an independent {@link Server}
+ * on its own loopback port; a gateway opens, closes, exports and imports rooms
+ * and polls load metrics over a line-based control connection (see the cluster
+ * control commands in {@link Protocol}). The control port only listens on loopback.
+ *
+ * All rooms share one set of {@link ServerThreads} (timing wheel, tick scheduler
+ * and snapshot encoding pool), so the threads of a backend do not grow with the
+ * number of rooms it hosts.
+ */
+public class RoomHost {
+    // Ticks mostly wait for the shared encoding pool, so a few threads serve many rooms
+    private static final int TICK_THREADS = Math.max(2, Runtime.getRuntime().availableProcessors() / 4);
+
+    private final int controlPort;
+    private final boolean virtualThreads;
+    private final ServerThreads roomThreads = new ServerThreads("room", TICK_THREADS);
+    private final Map<String, Server> rooms = new HashMap<>(); // Guarded by lock
+    private final ReentrantLock lock = new ReentrantLock();
+    private ServerSocket controlSocket;
+
+    /**
+     * @param controlPort Loopback port the gateway connects to
+     * @param virtualThreads true to run room connections on virtual threads
+     */
+    public RoomHost(int controlPort, boolean virtualThreads) {
+        this.controlPort = controlPort;
+        this.virtualThreads = virtualThreads;
+    }
+
+    /**
+     * Accepts control connections on a background thread
+     */
+    public void start() throws IOException {
+        controlSocket = new ServerSocket(controlPort, 50, InetAddress.getLoopbackAddress());
+        System.out.println("Room host control port " + controlPort);
+        roomThreads.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown));
+        new Thread(() -> {
+            while (!controlSocket.isClosed()) {
+                try {
+                    Socket socket = controlSocket.accept();
+                    new Thread(() -> serveControl(socket), "room-control").start();
+                } catch (IOException e) {
+                    if (!controlSocket.isClosed()) {
+                        System.err.println("Control connection error: " + e.getMessage());
+                    }
+                }
+            }
+        }, "room-control-acceptor").start();
+    }
+
+    private void serveControl(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream()), true)) {
+            String command;
+            while ((command = in.readLine()) != null) {
+                out.println(execute(command));
+            }
+        } catch (IOException e) {
+            System.err.println("Control connection closed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Runs one control command
+     * @return Reply line
+     */
+    String execute(String command) {
+        lock.lock();
+        try {
+            if (command.equals(Protocol.METRICS)) {
+                return metrics();
+            } else if (command.startsWith(Protocol.OPEN_ROOM)) {
+                return Protocol.REPLY_OK + ":" + open(command.substring(Protocol.OPEN_ROOM.length()), null);
+            } else if (command.startsWith(Protocol.IMPORT_ROOM)) {
+                String[] parts = command.substring(Protocol.IMPORT_ROOM.length()).split(":", 2);
+                return Protocol.REPLY_OK + ":" + open(parts[0], parts[1]);
+            } else if (command.startsWith(Protocol.EXPORT_ROOM)) {
+                return Protocol.REPLY_STATE + room(command.substring(Protocol.EXPORT_ROOM.length())).exportState();
+            } else if (command.startsWith(Protocol.CLOSE_ROOM)) {
+                String name = command.substring(Protocol.CLOSE_ROOM.length());
+                room(name).shutdown();
+                rooms.remove(name);
+                System.out.println("Closed room " + name);
+                return Protocol.REPLY_OK;
+            }
+            return Protocol.REPLY_ERROR + "Unknown command";
+        } catch (IOException | RuntimeException e) {
+            return Protocol.REPLY_ERROR + e.getMessage();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Starts a room (or returns the running one), optionally from exported state
+     * @return Port of the room's server
+     */
+    private int open(String name, String state) throws IOException {
+        Server room = rooms.get(name);
+        if (room != null) {
+            if (state != null) throw new IllegalStateException("Room already open: " + name);
+            return room.getPort();
+        }
+        room = new Server(virtualThreads, roomThreads);
+        room.start(0, InetAddress.getLoopbackAddress()); // Reachable through the gateway only
+        if (state != null) {
+            try {
+                room.importState(state);
+            } catch (RuntimeException e) {
+                room.shutdown(); // Not in rooms yet, so nothing else would stop it
+                throw e;
+            }
+        }
+        rooms.put(name, room);
+        System.out.println((state != null ? "Imported room " : "Opened room ") + name + " on port " + room.getPort());
+        return room.getPort();
+    }
+
+    /**
+     * Closes every room, then stops the threads they shared
+     */
+    private void shutdown() {
+        lock.lock();
+        try {
+            for (Server room : rooms.values()) {
+                try {
+                    room.shutdown();
+                } catch (IOException e) {
+                    System.err.println("Error closing room: " + e.getMessage());
+                }
+            }
+            rooms.clear();
+            roomThreads.stop();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private Server room(String name) {
+        Server room = rooms.get(name);
+        if (room == null) throw new IllegalArgumentException("No such room: " + name);
+        return room;
+    }
+
+    private String metrics() {
+        int clients = 0;
+        for (Server room : rooms.values()) {
+            clients += room.getClientCount();
+        }
+        OperatingSystemMXBean os = ManagementFactory.getOperatingSystemMXBean();
+        double cpu = (os instanceof com.sun.management.OperatingSystemMXBean hotspot)
+                ? hotspot.getProcessCpuLoad()
+                : -1;
+        long heapMb = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed() / (1024 * 1024);
+        return Protocol.METRICS + ":" + rooms.size() + "," + clients + ","
+                + Math.round(Math.max(cpu, 0) * 100) + "," + heapMb;
+    }
+}
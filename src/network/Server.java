@@ -2,144 +2,677 @@ package network;
 
 import java.io.*;
 import java.net.*;
+import java.nio.file.Path;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongFunction;
 
 /**
  * Game server implementation handling client connections and game state synchronization.
  * Supports 4 message types:
- * 1. RESET_FOODS - Reset all food positions
- * 2. FOOD:x,y - Mark food as eaten
+ * 1. RESET_FOODS[:epoch] - Reset all food positions, starting the next food epoch
+ * 2. FOOD:x,y[@epoch] - Mark food as eaten (ignored if the epoch is stale)
  * 3. PLAYER_STATE - Player position/direction updates
- * 4. INIT - Initial connection handshake
+ * 4. INIT - Initial connection handshake (HELLO or RESUME:token,lastSeq)
+ *
+ * Sessions outlive their sockets for a grace period, so a client that drops
+ * briefly can resume its player slot and receive only the food changes it missed.
+ * A single timing wheel tracks idle deadlines: quiet connections are pinged
+ * and reaped if no PONG (or any other line) arrives in time.
+ *
+ * Every connection runs a blocking read loop and a writer draining its own
+ * outbound queue. Both run on a managed executor backed by either platform
+ * threads or virtual threads; shared state is guarded by a ReentrantLock
+ * rather than monitors so virtual threads never pin their carriers.
+ *
+ * Readers never take the state lock: game messages go into the connection's
+ * {@link InboundStage}, which keeps the newest player state, batches food events
+ * and rate-limits the client. Each tick applies every stage under one lock hold.
+ *
+ * State changes are broadcast once per server tick. The tick copies the state
+ * into a read-only {@link TickSnapshot} under the lock, then encodes each
+ * client's payload (other players, food eaten since its previous payload) in
+ * parallel on a fork/join pool and waits for all of them before the next tick.
+ * The tick scheduler, that pool and the timing wheel are {@link ServerThreads},
+ * which the rooms of a {@link RoomHost} share.
+ *
+ * Each connection is clock-synced every few seconds (TSYNC); round-trip times go
+ * into per-client and server-wide {@link LatencyHistogram}s that the admin console
+ * reads through {@link #latencyReport()}. Snapshots carry the server wall clock so
+ * clients can tell how stale they are.
+ *
+ * Clients may offer compression in the handshake; the connection's writer then
+ * deflates its lines with a {@link LineCompression.Encoder}, which turns itself
+ * off where it does not pay. {@link #compressionReport()} shows ratio and CPU cost.
+ *
+ * In lockstep mode the server keeps no game state at all: a {@link LockstepRelay}
+ * relays input frames and clients simulate the match from a shared seed.
  */
 public class Server {
     // Core server components
     private ServerSocket serverSocket;
-    private List<ClientHandler> clients = new ArrayList<>();
-    private Map<String, String> playerStates = new ConcurrentHashMap<>();
-    private Set<String> eatenFoods = new ConcurrentHashSet<>(); // Track eaten food by position "x,y"
+    private ClientRegistry<ClientHandler> clients = new ClientRegistry<>(); // Lock-free, slot indexed
+    private PlayerTable players = new PlayerTable(); // Parsed player states, guarded by stateLock
+    private FoodJournal foodJournal = new FoodJournal(); // Track eaten food by position "x,y"
+    private SessionStore sessions = new SessionStore(SESSION_GRACE_MS);
+    private final ServerThreads threads;
+    private final boolean ownsThreads; // false for rooms sharing their host's threads
+    private final TimingWheel timers;
+    private final ReentrantLock stateLock = new ReentrantLock(); // Guards players and broadcasts
+    private final ExecutorService connectionThreads;
+    private final boolean virtualThreads;
+    private final LockstepRelay lockstep; // Null unless lockstep mode is enabled
+    private final LatencyHistogram rttHistogram = new LatencyHistogram(); // All clients
+    private ScheduledFuture<?> tickTask;
+    private boolean broadcastPending = false; // Guarded by stateLock
+    private volatile boolean compression = true; // Accept compression offers from clients
+    private Thread shutdownHook;
+
+    private static final long SESSION_GRACE_MS = 30_000; // Time a dropped player keeps its slot
+    private static final long IDLE_TIMEOUT_MS = 5_000;   // Silence before a PING is sent
+    private static final long PONG_TIMEOUT_MS = 5_000;   // Silence after a PING before reaping
+    private static final long SHM_POLL_MS = 50;          // Shared-memory connect polling interval
+    private static final int OUTBOX_CAPACITY = 256;      // Queued lines before stale snapshots are dropped
+    private static final Outbound WRITER_STOP = new Outbound("<stop>", false); // Identity sentinel for writers
+    private static final Outbound COMPRESSION_START = new Outbound("<deflate>", false); // Writer sentinel after the handshake
+    private static final long LOCKSTEP_TICK_MS = 50;     // Matches the client game loop
+    private static final long TIME_SYNC_INTERVAL_MS = 2_000;
+    private static final long BROADCAST_TICK_MS = 50;    // Matches the client game loop
+    private static final int CLIENTS_PER_TASK = 32;      // Below this an encoding task stops splitting
 
     /**
-     * Starts the server on specified port
-     * @param port Network port to listen on
+     * Creates a server running connections on platform threads
+     */
+    public Server() {
+        this(false, false);
+    }
+
+    /**
+     * @param virtualThreads true to run connection readers and writers on virtual threads
+     */
+    public Server(boolean virtualThreads) {
+        this(virtualThreads, false);
+    }
+
+    /**
+     * @param virtualThreads true to run connection readers and writers on virtual threads
+     * @param lockstep true to relay inputs for deterministic client simulations
+     */
+    public Server(boolean virtualThreads, boolean lockstep) {
+        this(virtualThreads, lockstep, new ServerThreads("server", 1), true);
+    }
+
+    /**
+     * Creates a room server running its ticks and timers on threads shared with other rooms
+     * @param virtualThreads true to run connection readers and writers on virtual threads
+     * @param shared Started threads, stopped by their owner after all of its servers
+     */
+    Server(boolean virtualThreads, ServerThreads shared) {
+        this(virtualThreads, false, shared, false);
+    }
+
+    private Server(boolean virtualThreads, boolean lockstep, ServerThreads threads, boolean ownsThreads) {
+        this.threads = threads;
+        this.ownsThreads = ownsThreads;
+        this.timers = threads.timers;
+        this.virtualThreads = virtualThreads;
+        this.lockstep = lockstep
+                ? new LockstepRelay(new Random().nextLong(), LOCKSTEP_TICK_MS, this::broadcastLine)
+                : null;
+        this.connectionThreads = Threads.executor("client-", virtualThreads);
+    }
+
+    /**
+     * Starts the server on specified port, listening on all interfaces
+     * @param port Network port to listen on, 0 for any free port
      */
     public void start(int port) throws IOException {
-        serverSocket = new ServerSocket(port);
-        System.out.println("Server started on port " + port);
+        start(port, null);
+    }
 
-        // Add shutdown hook
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            try {
-                shutdown();
-                System.out.println("Server shutdown complete");
-            } catch (IOException e) {
-                System.err.println("Error during shutdown: " + e.getMessage());
-            }
-        }));
+    /**
+     * Starts the server on specified port
+     * @param port Network port to listen on, 0 for any free port
+     * @param bindAddress Interface to listen on, null for all interfaces
+     */
+    public void start(int port, InetAddress bindAddress) throws IOException {
+        serverSocket = new ServerSocket(port, 50, bindAddress);
+        if (ownsThreads) {
+            threads.start();
+        }
+        if (lockstep != null) {
+            lockstep.start();
+        } else {
+            tickTask = threads.ticker.scheduleAtFixedRate(this::broadcastTick,
+                    BROADCAST_TICK_MS, BROADCAST_TICK_MS, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("Server started on port " + getPort()
+                + (virtualThreads ? " (virtual threads)" : " (platform threads)")
+                + (lockstep != null ? " in lockstep mode" : ""));
+
+        // Add shutdown hook (a room host shuts its rooms down itself)
+        if (ownsThreads) {
+            shutdownHook = new Thread(() -> {
+                try {
+                    shutdown();
+                    System.out.println("Server shutdown complete");
+                } catch (IOException e) {
+                    System.err.println("Error during shutdown: " + e.getMessage());
+                }
+            });
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
 
         // Client connection acceptor thread
         new Thread(() -> {
             while (!serverSocket.isClosed()) {
                 try {
                     Socket clientSocket = serverSocket.accept();
-                    ClientHandler client = new ClientHandler(clientSocket, this);
-                    synchronized (clients) {
-                        clients.add(client);
-                    }
-                    new Thread(client).start();
+                    accept(new SocketConnection(clientSocket));
                 } catch (IOException e) {
                     if (!serverSocket.isClosed()) {
                         System.err.println("Connection error: " + e.getMessage());
                     }
                 }
             }
-        }).start();
+        }, "client-acceptor").start();
+    }
+
+    /**
+     * Also accepts same-host clients over shared-memory rings (see {@link ShmConnection}).
+     * New connection files are picked up by polling the port's directory, so the
+     * only system calls happen while connecting; lines then pass without any.
+     * Call after {@link #start(int)}.
+     * @param baseDir Parent of the per-port directory, or null for the default
+     */
+    public void acceptSharedMemory(String baseDir) throws IOException {
+        Path directory = ShmConnection.serverDirectory(baseDir, getPort());
+        ShmConnection.prepareDirectory(directory);
+        System.out.println("Accepting shared-memory clients in " + directory);
+
+        Thread acceptor = new Thread(() -> {
+            Set<Path> seen = new HashSet<>();
+            while (!serverSocket.isClosed()) {
+                try {
+                    List<Path> files = ShmConnection.pendingFiles(directory);
+                    seen.retainAll(files);
+                    for (Path file : files) {
+                        if (!seen.add(file)) continue;
+                        ShmConnection connection = ShmConnection.accept(file);
+                        if (connection != null) {
+                            accept(connection);
+                        }
+                    }
+                    Thread.sleep(SHM_POLL_MS);
+                } catch (IOException e) {
+                    System.err.println("Shared-memory connection error: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "shm-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private void accept(Connection connection) {
+        ClientHandler client = new ClientHandler(connection, this);
+        client.slot = clients.add(client);
+        connectionThreads.execute(client);
     }
 
     /**
-     * Updates game state from client messages
-     * @param playerId Unique client identifier
-     * @param state Message payload containing game data
+     * @return Port the server is listening on
      */
-    public synchronized void updatePlayerState(String playerId, String state) {
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * @return Number of open client connections
+     */
+    public int getClientCount() {
+        return clients.size();
+    }
+
+    /**
+     * Serializes the game state and sessions so another server can take over:
+     * players#foods#seq#playerId,token;...#epoch
+     */
+    public String exportState() {
+        stateLock.lock();
+        try {
+            StringBuilder state = new StringBuilder(512);
+            players.encode(state);
+            state.append(Protocol.SECTION_SEPARATOR).append(foodJournal.encodeAll())
+                    .append(Protocol.SECTION_SEPARATOR).append(foodJournal.sequence())
+                    .append(Protocol.SECTION_SEPARATOR);
+            boolean first = true;
+            for (SessionStore.Session session : sessions.all()) {
+                if (!first) state.append(Protocol.ENTRY_SEPARATOR);
+                first = false;
+                state.append(session.playerId).append(',').append(session.token);
+            }
+            state.append(Protocol.SECTION_SEPARATOR).append(foodJournal.epoch());
+            return state.toString();
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * Takes over state exported by {@link #exportState()}. Imported sessions start
+     * detached, so their clients can resume here with their old tokens.
+     * @throws IllegalArgumentException if the state is malformed
+     */
+    public void importState(String state) {
+        String[] sections = state.split(Protocol.SECTION_SEPARATOR, -1);
+        if (sections.length < 4) {
+            throw new IllegalArgumentException("Expected players#foods#seq#sessions");
+        }
+        long now = System.currentTimeMillis();
+        stateLock.lock();
+        try {
+            for (String entry : sections[0].split(Protocol.ENTRY_SEPARATOR)) {
+                if (entry.isEmpty()) continue;
+                players.update(players.acquire(entry.substring(0, entry.indexOf(','))), entry);
+            }
+            List<String> foods = sections[1].isEmpty()
+                    ? List.of()
+                    : Arrays.asList(sections[1].split(Protocol.ENTRY_SEPARATOR));
+            long epoch = (sections.length > 4) ? Long.parseLong(sections[4]) : 0;
+            foodJournal.restore(foods, Long.parseLong(sections[2]), epoch);
+            for (String entry : sections[3].split(Protocol.ENTRY_SEPARATOR)) {
+                if (entry.isEmpty()) continue;
+                String[] fields = entry.split(",", 2);
+                SessionStore.Session session = sessions.restore(fields[1], fields[0], now);
+                sessions.scheduleExpiry(timers, session, this::sessionExpired);
+            }
+            broadcastPending = true;
+        } finally {
+            stateLock.unlock();
+        }
+    }
+
+    /**
+     * Applies the input each client's reader staged since the last tick.
+     * Caller holds the state lock.
+     * @param waited Event begun before the tick took the lock; the first message
+     *               applied reports through it, so its duration includes the lock wait
+     * @param lockWait Time the tick waited for the lock, reported with each message
+     */
+    private void drainInbound(ServerEvents.PlayerState waited, long lockWait) {
+        ServerEvents.PlayerState[] pending = {waited};
+        clients.forEach((client, slot) -> {
+            String playerId = client.playerId;
+            if (playerId == null) return;
+            client.inbound.drainTo(state -> {
+                ServerEvents.PlayerState event = pending[0];
+                if (event != null) {
+                    pending[0] = null;
+                } else {
+                    event = new ServerEvents.PlayerState();
+                    event.begin();
+                }
+                applyPlayerState(playerId, state);
+                if (event.shouldCommit()) {
+                    event.playerId = playerId;
+                    event.messageType = state.startsWith(Protocol.RESET_FOODS) ? Protocol.RESET_FOODS
+                            : state.startsWith(Protocol.FOOD) ? "FOOD" : "STATE";
+                    event.lockWait = lockWait;
+                    event.commit();
+                }
+            });
+        });
+    }
+
+    private void applyPlayerState(String playerId, String state) {
+        boolean changed;
         // Handle special commands
-        if (state.startsWith("RESET_FOODS")) {
-            eatenFoods.clear();
-        } else if (state.startsWith("FOOD:")) {
-            String foodPos = state.substring(5);
-            eatenFoods.add(foodPos);
+        if (state.startsWith(Protocol.RESET_FOODS)) {
+            changed = foodJournal.reset(Protocol.parseEventEpoch(state));
+        } else if (state.startsWith(Protocol.FOOD)) {
+            String foodPos = Protocol.parseFoodPosition(state);
+            changed = foodJournal.eat(foodPos, Protocol.parseEventEpoch(state));
         } else {
-            playerStates.put(playerId, state);
+            try {
+                changed = players.update(players.acquire(playerId), state) != 0;
+            } catch (IllegalArgumentException e) { // Includes NumberFormatException
+                System.err.println("Malformed player state from " + playerId + ": " + state);
+                return;
+            }
+        }
+        // Nothing to tell other players about, e.g. Pac-Man resting against a wall
+        if (changed) {
+            broadcastPending = true;
         }
-        broadcastGameState();
     }
 
     /**
      * Removes disconnected player from game state
      */
-    public synchronized void removePlayer(String playerId) {
-        playerStates.remove(playerId);
-        broadcastGameState();
+    public void removePlayer(String playerId) {
+        if (lockstep != null) {
+            lockstep.detach(playerId);
+            return;
+        }
+        stateLock.lock();
+        try {
+            if (players.release(playerId)) {
+                broadcastPending = true;
+            }
+        } finally {
+            stateLock.unlock();
+        }
     }
 
     /**
-     * Broadcasts combined game state to all connected clients
+     * Closes connections that still hold a session taken over by a resume
+     * (the old socket may be half-open and not noticed as dead yet)
      */
-    private synchronized void broadcastGameState() {
-        String statePayload = String.join(";", playerStates.values())
-                + "#" + String.join(";", eatenFoods);
+    private void dropStaleConnections(SessionStore.Session session, ClientHandler current) {
+        clients.forEach((client, slot) -> {
+            if (client != current && client.session == session) {
+                client.disconnect();
+            }
+        });
+    }
+
+    /**
+     * Drops the player once a detached session's grace period has run out
+     */
+    private void sessionExpired(SessionStore.Session session) {
+        System.out.println("Session expired: " + session.playerId);
+        removePlayer(session.playerId);
+    }
 
-        // Thread-safe iteration through clients
-        synchronized (clients) {
-            clients.removeIf(client -> {
-                if (!client.isActive()) return true;
-                client.sendGameState(statePayload);
-                return false;
+    /**
+     * Broadcasts the state changed since the previous tick to all ready clients.
+     * The snapshot and recipient list are taken under stateLock; encoding runs
+     * outside it on the broadcast pool, and invoke() is the barrier that keeps
+     * ticks from overlapping. Sends only enqueue, so no socket I/O happens here.
+     */
+    private void broadcastTick() {
+        TickSnapshot snapshot;
+        List<ClientHandler> targets = new ArrayList<>();
+        ServerEvents.Broadcast event = new ServerEvents.Broadcast();
+        event.begin();
+        ServerEvents.PlayerState firstApplied = new ServerEvents.PlayerState();
+        firstApplied.begin(); // Before lock(), so a long lock wait crosses the event threshold
+        long waitStart = System.nanoTime();
+        stateLock.lock();
+        try {
+            event.lockWait = System.nanoTime() - waitStart;
+            drainInbound(firstApplied, event.lockWait);
+            if (!broadcastPending) return;
+            broadcastPending = false;
+            long[] oldestSent = {Long.MAX_VALUE};
+            clients.forEach((client, slot) -> {
+                if (!client.isActive()) {
+                    clients.remove(slot, client);
+                } else if (client.ready) {
+                    targets.add(client);
+                    oldestSent[0] = Math.min(oldestSent[0], client.lastSentSeq);
+                }
             });
+            snapshot = new TickSnapshot(players, foodJournal, oldestSent[0]);
+            players.clearAllDirty();
+        } catch (RuntimeException e) {
+            System.err.println("Broadcast tick failed: " + e.getMessage());
+            return;
+        } finally {
+            stateLock.unlock();
+        }
+        if (targets.isEmpty()) return;
+        LongAdder payloadBytes = new LongAdder();
+        try {
+            threads.encodePool.invoke(new EncodeTask(snapshot, targets.toArray(new ClientHandler[0]),
+                    0, targets.size(), payloadBytes));
+        } catch (RuntimeException e) {
+            System.err.println("Broadcast encoding failed: " + e.getMessage()); // Keep ticking
+        }
+        if (event.shouldCommit()) {
+            event.clientCount = targets.size();
+            event.payloadBytes = payloadBytes.sum();
+            event.commit();
+        }
+    }
+
+    /**
+     * Encodes and queues the payloads of a range of clients, splitting large ranges
+     */
+    @SuppressWarnings("serial") // Never serialized; RecursiveAction is Serializable only by inheritance
+    private static final class EncodeTask extends RecursiveAction {
+        private final TickSnapshot snapshot;
+        private final ClientHandler[] targets;
+        private final int from;
+        private final int to;
+        private final LongAdder payloadBytes;
+
+        EncodeTask(TickSnapshot snapshot, ClientHandler[] targets, int from, int to, LongAdder payloadBytes) {
+            this.snapshot = snapshot;
+            this.targets = targets;
+            this.from = from;
+            this.to = to;
+            this.payloadBytes = payloadBytes;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= CLIENTS_PER_TASK) {
+                long bytes = 0;
+                for (int i = from; i < to; i++) {
+                    ClientHandler client = targets[i];
+                    bytes += client.queueSnapshot(
+                            lastSeq -> snapshot.encodeFor(client.playerId, lastSeq), snapshot.sequence());
+                }
+                payloadBytes.add(bytes);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new EncodeTask(snapshot, targets, from, middle, payloadBytes),
+                    new EncodeTask(snapshot, targets, middle, to, payloadBytes));
+        }
+    }
+
+    /**
+     * Queues a line for every client that finished its handshake
+     */
+    private void broadcastLine(String line) {
+        // Wait-free iteration through clients, pruning dead handles
+        clients.forEach((client, slot) -> {
+            if (!client.isActive()) {
+                clients.remove(slot, client);
+                return;
+            }
+            if (client.ready) {
+                client.sendGameState(line);
+            }
+        });
+    }
+
+    /**
+     * Sends the current snapshot to one client, so a newcomer sees players
+     * that are not moving (unchanged states are not re-broadcast), then lets
+     * broadcasts reach it
+     * @param lastSeq Last sequence the client applied, -1 for a new client
+     */
+    private void sendSnapshot(ClientHandler client, long lastSeq) {
+        stateLock.lock();
+        try {
+            client.lastSentSeq = lastSeq;
+            client.queueSnapshot(seq -> encodeSnapshot(
+                    (seq < 0) ? foodJournal.encodeAll() : foodJournal.encodeSince(seq)), foodJournal.sequence());
+            client.ready = true;
+        } finally {
+            stateLock.unlock();
         }
     }
 
+    private String encodeSnapshot(String foods) {
+        StringBuilder payload = new StringBuilder(256);
+        players.encode(payload);
+        payload.append(Protocol.SECTION_SEPARATOR).append(foods)
+                .append(Protocol.SECTION_SEPARATOR).append(foodJournal.sequence())
+                .append(Protocol.SECTION_SEPARATOR).append(System.currentTimeMillis())
+                .append(Protocol.SECTION_SEPARATOR).append(foodJournal.epoch());
+        return payload.toString();
+    }
+
+    /**
+     * Round-trip times measured by clock sync, server-wide and per connected player
+     */
+    public String latencyReport() {
+        StringBuilder report = new StringBuilder();
+        report.append("all clients: ").append(rttHistogram.summary()).append('\n');
+        clients.forEach((client, slot) -> {
+            if (!client.isActive()) return;
+            report.append(client.playerId).append(": rtt ").append(client.rtt.summary())
+                    .append(", clock offset ").append(client.clockOffsetMs).append(" ms\n");
+        });
+        return report.toString();
+    }
+
+    /**
+     * @return Per-client inbound counters (accepted, coalesced, rate-limited), one line each
+     */
+    public String inboundReport() {
+        StringBuilder report = new StringBuilder();
+        long[] dropped = {0};
+        clients.forEach((client, slot) -> {
+            if (!client.isActive()) return;
+            dropped[0] += client.inbound.getDropped();
+            report.append(client.playerId).append(": ").append(client.inbound.summary()).append('\n');
+        });
+        report.append("all clients: dropped ").append(dropped[0]).append('\n');
+        return report.toString();
+    }
+
+    /**
+     * @return Per-client compression ratio (wire bytes / raw bytes of compressed lines) and CPU time, one line each
+     */
+    public String compressionReport() {
+        StringBuilder report = new StringBuilder();
+        long[] totals = {0, 0};
+        clients.forEach((client, slot) -> {
+            LineCompression.Encoder encoder = client.encoder;
+            if (!client.isActive() || encoder == null) return;
+            totals[0] += encoder.rawBytes();
+            totals[1] += encoder.wireBytes();
+            report.append(client.playerId).append(": ").append(encoder.summary()).append('\n');
+        });
+        report.append(String.format("all clients: %d KB -> %d KB%n", totals[0] / 1024, totals[1] / 1024));
+        return report.toString();
+    }
+
+    /**
+     * @param enabled false to decline compression offers from clients connecting later
+     */
+    public void setCompression(boolean enabled) {
+        compression = enabled;
+    }
+
+    /**
+     * Clears the server-wide and per-client latency histograms
+     */
+    public void resetLatency() {
+        rttHistogram.reset();
+        clients.forEach((client, slot) -> client.rtt.reset());
+    }
+
     /**
      * Graceful server shutdown sequence
      */
     public void shutdown() throws IOException {
         System.out.println("Initiating server shutdown...");
-        synchronized (clients) {
-            for (ClientHandler client : clients) {
-                client.disconnect();
+        if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // JVM already shutting down
             }
-            clients.clear();
         }
+        if (tickTask != null) {
+            tickTask.cancel(false);
+        }
+        if (lockstep != null) {
+            lockstep.stop();
+        }
+        if (ownsThreads) {
+            threads.stop();
+        }
+        clients.forEach((client, slot) -> {
+            client.disconnect();
+            clients.remove(slot, client);
+        });
         serverSocket.close();
+        connectionThreads.shutdown();
     }
 
+    /**
+     * Line waiting in a client's outbox. Snapshots may be dropped when the
+     * client falls behind; control lines (handshake, PING, TSYNC, frames) never are.
+     */
+    private record Outbound(String line, boolean snapshot) {}
+
     /**
      * Handles individual client connections
      */
     private class ClientHandler implements Runnable {
-        private Socket clientSocket;
+        private Connection connection;
         private Server server;
-        private PrintWriter out;
-        private BufferedReader in;
+        private final BlockingQueue<Outbound> outbox = new LinkedBlockingQueue<>(OUTBOX_CAPACITY);
+        private final ReentrantLock outboxLock = new ReentrantLock(); // Orders overflow handling with lastSentSeq
         private String playerId;
-        private boolean isConnected = true;
+        private SessionStore.Session session;
+        private int slot; // Registry slot, assigned before the handler thread starts
+        private volatile boolean isConnected = true;
+        private volatile boolean ready = false; // Handshake queued, broadcasts may follow
+        private volatile long lastSentSeq = -1; // Food sequence of the last payload queued
+        private boolean leaving = false; // Client said BYE, skip the grace period
+        private volatile LineCompression.Encoder encoder; // Set by the writer once compression starts
 
-        public ClientHandler(Socket socket, Server server) {
-            this.clientSocket = socket;
+        // Heartbeat state, read by the timer thread
+        private volatile long lastActivity = System.currentTimeMillis();
+        private long connectedAt = 0; // Set after the handshake, for the disconnect event
+        final InboundStage inbound = new InboundStage();
+        private volatile boolean pingSent = false;
+        private volatile TimingWheel.Timeout idleTimeout;
+
+        // Clock sync results, read by the admin console
+        private final LatencyHistogram rtt = new LatencyHistogram();
+        private volatile long clockOffsetMs = 0; // Client wall clock minus server wall clock
+        private volatile TimingWheel.Timeout timeSync;
+
+        public ClientHandler(Connection connection, Server server) {
+            this.connection = connection;
             this.server = server;
         }
 
         public void run() {
-            try (InputStreamReader isr = new InputStreamReader(clientSocket.getInputStream());
-                 BufferedReader br = new BufferedReader(isr);
-                 PrintWriter pw = new PrintWriter(clientSocket.getOutputStream(), true)) {
-
-                this.out = pw;
-                this.in = br;
+            try {
+                server.connectionThreads.execute(this::writeLoop);
 
                 // Initialize client connection
-                initializeClient();
+                idleTimeout = server.timers.schedule(IDLE_TIMEOUT_MS, this::checkIdle);
+                ServerEvents.ClientConnect event = new ServerEvents.ClientConnect();
+                event.begin();
+                boolean resumed = initializeClient();
+                connectedAt = System.currentTimeMillis();
+                if (event.shouldCommit()) {
+                    event.playerId = playerId;
+                    event.transport = connection.toString();
+                    event.resumed = resumed;
+                    event.commit();
+                }
+                syncClock();
                 processClientMessages();
 
             } catch (SocketException e) {
@@ -151,54 +684,279 @@ public class Server {
             }
         }
 
-        private void initializeClient() throws IOException {
-            // Generate unique player ID
-            playerId = UUID.randomUUID().toString();
+        /**
+         * @return true if an existing session was resumed
+         */
+        private boolean initializeClient() throws IOException {
+            String hello = connection.readLine();
+            if (hello == null) {
+                throw new SocketException("Connection closed during handshake");
+            }
+
+            boolean deflate = server.compression && Protocol.offersDeflate(hello);
+            hello = Protocol.withoutOptions(hello);
 
-            // Send initial game state
-            String initialData = playerId + "#" + String.join(",", server.eatenFoods);
-            out.println(initialData);
+            // Try to take back an existing session first
+            String foods = null;
+            long lastSeq = -1;
+            if (hello.startsWith(Protocol.RESUME)) {
+                String[] resume = hello.substring(Protocol.RESUME.length()).split(",", 2);
+                session = server.sessions.resume(resume[0], this, System.currentTimeMillis());
+                if (session != null) {
+                    lastSeq = parseLastSequence(resume);
+                    foods = server.foodJournal.encodeSince(lastSeq);
+                }
+            }
 
-            System.out.println("Player connected: " + playerId);
+            boolean resumed = session != null;
+            if (!resumed) {
+                // Generate unique player ID
+                session = server.sessions.create(UUID.randomUUID().toString(), this);
+                foods = server.foodJournal.encodeAll();
+                System.out.println("Player connected: " + session.playerId);
+            } else {
+                server.dropStaleConnections(session, this);
+                System.out.println("Player resumed: " + session.playerId);
+            }
+            playerId = session.playerId;
+
+            // Send initial game state: playerId#foods#seq#token#tickMs#epoch[#deflate]
+            String initialData = playerId + Protocol.SECTION_SEPARATOR + foods
+                    + Protocol.SECTION_SEPARATOR + server.foodJournal.sequence()
+                    + Protocol.SECTION_SEPARATOR + session.token
+                    + Protocol.SECTION_SEPARATOR + BROADCAST_TICK_MS
+                    + Protocol.SECTION_SEPARATOR + server.foodJournal.epoch();
+            if (deflate) {
+                sendGameState(initialData + Protocol.SECTION_SEPARATOR + Protocol.DEFLATE);
+                enqueue(COMPRESSION_START); // The handshake itself stays readable for gateways
+            } else {
+                sendGameState(initialData);
+            }
+            if (server.lockstep != null) {
+                server.lockstep.attach(playerId, lastSeq, this::sendGameState, () -> ready = true);
+            } else {
+                server.sendSnapshot(this, lastSeq);
+            }
+            return resumed;
+        }
+
+        private long parseLastSequence(String[] resume) {
+            try {
+                return resume.length > 1 ? Long.parseLong(resume[1]) : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
         }
 
         private void processClientMessages() throws IOException {
             String message;
-            while ((message = in.readLine()) != null) {
-                server.updatePlayerState(playerId, message);
+            while ((message = connection.readLine()) != null) {
+                lastActivity = System.currentTimeMillis();
+                if (message.equals(Protocol.PONG)) {
+                    continue; // Heartbeat only
+                }
+                if (message.equals(Protocol.BYE)) {
+                    leaving = true;
+                    break;
+                }
+                if (message.startsWith(Protocol.TIME_SYNC)) {
+                    handleTimeSync(message);
+                    continue;
+                }
+                if (server.lockstep != null) {
+                    server.lockstep.handle(playerId, message);
+                } else {
+                    inbound.offer(message); // Applied on the next tick
+                }
+            }
+        }
+
+        /**
+         * Answers a client's clock sync request or records the result of ours
+         */
+        private void handleTimeSync(String message) {
+            String reply = Protocol.timeSyncReply(message);
+            if (reply != null) {
+                sendGameState(reply);
+                return;
+            }
+            Protocol.TimeSample sample = Protocol.parseTimeSyncReply(message);
+            if (sample != null) {
+                rtt.record(sample.rttMicros());
+                server.rttHistogram.record(sample.rttMicros());
+                clockOffsetMs = sample.offsetMillis();
+            }
+        }
+
+        /**
+         * Sends a clock sync request and re-arms itself on the timer thread
+         */
+        private void syncClock() {
+            if (!isActive()) return;
+            sendGameState(Protocol.timeSyncRequest());
+            timeSync = server.timers.schedule(TIME_SYNC_INTERVAL_MS, this::syncClock);
+        }
+
+        /**
+         * Idle deadline callback on the timer thread. Activity only updates a
+         * timestamp, so the deadline is re-armed lazily here instead of per line.
+         */
+        private void checkIdle() {
+            if (!isActive()) return;
+            long now = System.currentTimeMillis();
+            long idle = now - lastActivity;
+            if (idle < IDLE_TIMEOUT_MS) {
+                pingSent = false;
+                idleTimeout = server.timers.schedule(IDLE_TIMEOUT_MS - idle, this::checkIdle);
+            } else if (!pingSent) {
+                pingSent = true;
+                sendGameState(Protocol.PING);
+                idleTimeout = server.timers.schedule(PONG_TIMEOUT_MS, this::checkIdle);
+            } else {
+                System.out.println("Reaping unresponsive client " + playerId
+                        + " (idle " + idle + " ms)");
+                disconnect(); // Unblocks the reader, which runs the cleanup
             }
         }
 
         private void cleanupClient() {
             isConnected = false;
+            inbound.close(); // Staged input must not bring the player back after removal
+            TimingWheel.Timeout timeout = idleTimeout;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            timeout = timeSync;
+            if (timeout != null) {
+                timeout.cancel();
+            }
+            stopWriter();
             try {
-                if (playerId != null) {
-                    server.removePlayer(playerId);
+                if (session != null) {
+                    if (leaving) {
+                        server.sessions.remove(session);
+                        server.removePlayer(playerId);
+                    } else if (server.sessions.detach(session, this, System.currentTimeMillis())) {
+                        System.out.println("Player detached, holding session: " + playerId);
+                        server.sessions.scheduleExpiry(server.timers, session, server::sessionExpired);
+                    }
                 }
-                clientSocket.close();
+                server.clients.remove(slot, this);
+                connection.close();
             } catch (IOException e) {
                 System.err.println("Cleanup error: " + e.getMessage());
             }
             System.out.println("Player disconnected: " + playerId);
+
+            ServerEvents.ClientDisconnect event = new ServerEvents.ClientDisconnect();
+            if (event.shouldCommit() && connectedAt > 0) {
+                event.playerId = playerId;
+                event.left = leaving;
+                event.connectedFor = System.currentTimeMillis() - connectedAt;
+                event.commit();
+            }
         }
 
+        /**
+         * Queues a control line for the writer. If the outbox is full, queued
+         * snapshots make room and the next one carries the full food list.
+         */
         public void sendGameState(String state) {
-            if (isConnected) {
-                out.println(state);
+            enqueue(new Outbound(state, false));
+        }
+
+        /**
+         * Queues a snapshot payload. Payloads carry only the food eaten since
+         * lastSentSeq, so when a reader too slow to keep up loses its queued
+         * snapshots, the replacement is encoded with the full food list.
+         * @param encode Encodes the payload for a last sent food sequence (-1 for all food)
+         * @param sequence Food sequence the payload brings the client up to
+         * @return Bytes queued
+         */
+        int queueSnapshot(LongFunction<String> encode, long sequence) {
+            outboxLock.lock();
+            try {
+                if (!isConnected) return 0;
+                String payload = encode.apply(lastSentSeq);
+                if (!outbox.offer(new Outbound(payload, true))) {
+                    outbox.removeIf(Outbound::snapshot);
+                    payload = encode.apply(-1);
+                    enqueue(new Outbound(payload, true));
+                }
+                lastSentSeq = sequence;
+                return payload.length() + 1;
+            } finally {
+                outboxLock.unlock();
+            }
+        }
+
+        private void enqueue(Outbound entry) {
+            outboxLock.lock();
+            try {
+                if (!isConnected || outbox.offer(entry)) return;
+                if (outbox.removeIf(Outbound::snapshot)) {
+                    lastSentSeq = -1; // Dropped deltas: resend all food next tick
+                }
+                if (!outbox.offer(entry)) {
+                    // Not even control lines drain: the client stopped reading
+                    System.out.println("Disconnecting stalled client " + playerId);
+                    disconnect();
+                }
+            } finally {
+                outboxLock.unlock();
+            }
+        }
+
+        /**
+         * Drains the outbound queue, flushing once per burst of messages.
+         * Compression starts here so lines are deflated in the order they are sent.
+         */
+        private void writeLoop() {
+            try {
+                Outbound message;
+                while ((message = outbox.take()) != WRITER_STOP) {
+                    if (message == COMPRESSION_START) {
+                        encoder = new LineCompression.Encoder();
+                    } else {
+                        String line = message.line();
+                        connection.writeLine((encoder != null) ? encoder.encode(line) : line);
+                    }
+                    if (outbox.isEmpty()) {
+                        connection.flush();
+                    }
+                }
+            } catch (IOException e) {
+                disconnect(); // Unblocks the reader, which runs the cleanup
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                LineCompression.Encoder finished = encoder;
+                if (finished != null) {
+                    finished.end();
+                }
+            }
+        }
+
+        /**
+         * Called once the connection is closing, so the backlog is no longer needed
+         */
+        private void stopWriter() {
+            while (!outbox.offer(WRITER_STOP)) {
+                outbox.clear();
             }
         }
 
-        public void disconnect() throws IOException {
+        public void disconnect() {
             try {
                 isConnected = false;
-                clientSocket.close();
+                connection.close();
             } catch (IOException e) {
                 System.err.println("Disconnect error: " + e.getMessage());
             }
         }
 
         public boolean isActive() {
-            return !clientSocket.isClosed() && isConnected;
+            return !connection.isClosed() && isConnected;
         }
     }
 }
\ No newline at end of file
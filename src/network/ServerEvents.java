@@ -0,0 +1,84 @@
+package network;
+
+import jdk.jfr.*;
+
+/**
+ * JDK Flight Recorder events for the server's hot paths.
+ * They cost next to nothing unless a recording enables them; the thresholds
+ * in pacman.jfc keep production recordings to the slow cases. Durations come
+ * from begin()/commit(), so stalls can be lined up against GC and lock events.
+ */
+final class ServerEvents {
+    private ServerEvents() {}
+
+    @Name("pacman.PlayerState")
+    @Label("Player State Update")
+    @Category({"Pac-Man", "Server"})
+    @Description("A staged client message applied to the game state")
+    @StackTrace(false)
+    static final class PlayerState extends Event {
+        @Label("Player")
+        String playerId;
+
+        @Label("Message Type")
+        @Description("STATE, FOOD or RESET_FOODS")
+        String messageType;
+
+        @Label("Lock Wait")
+        @Description("Time the applying tick waited for the state lock")
+        @Timespan(Timespan.NANOSECONDS)
+        long lockWait;
+    }
+
+    @Name("pacman.Broadcast")
+    @Label("Broadcast Tick")
+    @Category({"Pac-Man", "Server"})
+    @Description("One server tick encoding and queueing snapshots for every ready client")
+    @StackTrace(false)
+    static final class Broadcast extends Event {
+        @Label("Clients")
+        int clientCount;
+
+        @Label("Payload Size")
+        @Description("Bytes of all payloads queued in this tick")
+        @DataAmount
+        long payloadBytes;
+
+        @Label("Lock Wait")
+        @Timespan(Timespan.NANOSECONDS)
+        long lockWait;
+    }
+
+    @Name("pacman.ClientConnect")
+    @Label("Client Connect")
+    @Category({"Pac-Man", "Server"})
+    @Description("Handshake of a new or resuming client")
+    @StackTrace(false)
+    static final class ClientConnect extends Event {
+        @Label("Player")
+        String playerId;
+
+        @Label("Transport")
+        String transport;
+
+        @Label("Resumed")
+        boolean resumed;
+    }
+
+    @Name("pacman.ClientDisconnect")
+    @Label("Client Disconnect")
+    @Category({"Pac-Man", "Server"})
+    @StackTrace(false)
+    static final class ClientDisconnect extends Event {
+        @Label("Player")
+        String playerId;
+
+        @Label("Left")
+        @Description("true if the client said BYE, false if the connection dropped")
+        boolean left;
+
+        @Label("Connected For")
+        @Timespan(Timespan.MILLISECONDS)
+        long connectedFor;
+    }
+}
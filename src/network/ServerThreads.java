@@ -0,0 +1,49 @@
+package network;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads behind a server's game loop: the timing wheel for idle and session
+ * deadlines, the scheduler running broadcast ticks and the fork/join pool that
+ * encodes snapshots. A standalone {@link Server} owns one set; a {@link RoomHost}
+ * shares one set between all of its rooms, so opening a room adds no threads
+ * besides those of its connections.
+ */
+final class ServerThreads {
+    private static final long TIMER_TICK_MS = 100;
+    private static final int TIMER_WHEEL_SIZE = 512;
+
+    final TimingWheel timers;
+    final ScheduledExecutorService ticker;
+    final ForkJoinPool encodePool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    /**
+     * @param prefix Thread name prefix, e.g. "server" for server-timers and server-tick-0
+     * @param tickThreads Threads running broadcast ticks; a tick mostly waits for the encode pool
+     */
+    ServerThreads(String prefix, int tickThreads) {
+        timers = new TimingWheel(TIMER_TICK_MS, TIMER_WHEEL_SIZE, prefix + "-timers");
+        AtomicInteger count = new AtomicInteger();
+        ticker = Executors.newScheduledThreadPool(tickThreads, r -> {
+            Thread t = new Thread(r, prefix + "-tick-" + count.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    void start() {
+        timers.start();
+    }
+
+    /**
+     * Stops every thread; servers using the set must be shut down first
+     */
+    void stop() {
+        timers.stop();
+        ticker.shutdownNow();
+        encodePool.shutdown();
+    }
+}
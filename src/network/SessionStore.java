@@ -0,0 +1,168 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Keeps player sessions alive across short disconnections.
+ * A detached session survives for a grace period during which the client
+ * may present its resume token and take back its player slot.
+ */
+class SessionStore {
+    private final long gracePeriodMs;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>(); // Keyed by resume token
+    private final ReentrantLock lock = new ReentrantLock(); // Guards session ownership
+
+    /**
+     * Player session owned by at most one live connection
+     */
+    static class Session {
+        final String token;
+        final String playerId;
+        Object owner;          // Connection currently attached, null while detached
+        long detachedAt;       // Millis when the connection dropped
+
+        Session(String token, String playerId, Object owner) {
+            this.token = token;
+            this.playerId = playerId;
+            this.owner = owner;
+        }
+    }
+
+    SessionStore(long gracePeriodMs) {
+        this.gracePeriodMs = gracePeriodMs;
+    }
+
+    /**
+     * Opens a new session for a freshly connected player
+     * @param owner Connection that owns the session
+     */
+    Session create(String playerId, Object owner) {
+        Session session = new Session(UUID.randomUUID().toString(), playerId, owner);
+        sessions.put(session.token, session);
+        return session;
+    }
+
+    /**
+     * Recreates a session moved from another server. It starts detached, so its
+     * client has the usual grace period to resume with the same token.
+     */
+    Session restore(String token, String playerId, long now) {
+        Session session = new Session(token, playerId, null);
+        session.detachedAt = now;
+        sessions.put(token, session);
+        return session;
+    }
+
+    /**
+     * @return Copy of every session, attached or detached
+     */
+    List<Session> all() {
+        return new ArrayList<>(sessions.values());
+    }
+
+    /**
+     * Re-attaches a session to a new connection
+     * @return Session or null when the token is unknown or expired
+     */
+    Session resume(String token, Object owner, long now) {
+        lock.lock();
+        try {
+            Session session = sessions.get(token);
+            if (session == null) return null;
+            if (session.owner == null && now - session.detachedAt > gracePeriodMs) {
+                return null; // Expired, its timer will drop it
+            }
+            session.owner = owner;
+            return session;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Detaches a session from its connection and starts the grace period
+     * @return true if the connection still owned the session
+     */
+    boolean detach(Session session, Object owner, long now) {
+        lock.lock();
+        try {
+            if (session.owner != owner) return false; // Already resumed elsewhere
+            session.owner = null;
+            session.detachedAt = now;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops a session immediately (graceful leave)
+     */
+    void remove(Session session) {
+        sessions.remove(session.token);
+    }
+
+    /**
+     * @return Grace period a detached session is held for
+     */
+    long gracePeriodMs() {
+        return gracePeriodMs;
+    }
+
+    /**
+     * Arms the grace timer of a detached session. The wheel may fire up to one
+     * tick early, so a timer that finds time left re-arms itself for the rest.
+     * @param onExpired Called on the wheel thread once the session has been removed
+     */
+    void scheduleExpiry(TimingWheel timers, Session session, Consumer<Session> onExpired) {
+        timers.schedule(gracePeriodMs, () -> checkExpiry(timers, session, onExpired));
+    }
+
+    private void checkExpiry(TimingWheel timers, Session session, Consumer<Session> onExpired) {
+        long now = System.currentTimeMillis();
+        if (expire(session, now)) {
+            onExpired.accept(session);
+            return;
+        }
+        long left = graceLeft(session, now);
+        if (left > 0) {
+            timers.schedule(left, () -> checkExpiry(timers, session, onExpired));
+        }
+    }
+
+    /**
+     * @return Milliseconds until a stored, still detached session may expire,
+     *         or -1 if it was resumed or removed meanwhile
+     */
+    long graceLeft(Session session, long now) {
+        lock.lock();
+        try {
+            if (session.owner != null || sessions.get(session.token) != session) return -1;
+            return Math.max(1, gracePeriodMs - (now - session.detachedAt));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes a session if it is still detached and its grace period has elapsed
+     * @return true if the session was expired by this call
+     */
+    boolean expire(Session session, long now) {
+        lock.lock();
+        try {
+            if (session.owner != null || now - session.detachedAt < gracePeriodMs) {
+                return false;
+            }
+            return sessions.remove(session.token, session);
+        } finally {
+            lock.unlock();
+        }
+    }
+}
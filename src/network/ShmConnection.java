@@ -0,0 +1,291 @@
+package network;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * {@link Connection} between processes on the same host through a memory-mapped file.
+ * The file holds two single-producer/single-consumer rings, one per direction.
+ * Frames are length-prefixed UTF-8 lines; each ring's head and tail counters sit on
+ * separate cache lines and are published with release/acquire ordering, so handing
+ * a line over costs a few memory writes and no system call. An idle reader spins
+ * briefly, then yields, then parks with a growing back-off.
+ *
+ * Setup goes through one directory per server port: the client prepares a
+ * conn-*.ring file, renames it into place marked ready and waits until the
+ * server's acceptor marks it accepted. Either side hangs up by setting its
+ * closed flag; the server deletes the file.
+ */
+final class ShmConnection implements Connection {
+    static final int RING_CAPACITY = 1 << 18; // 256 KB per direction, power of two
+    private static final int MAGIC = 0x50414331; // "PAC1"
+
+    // File layout: header, then the client->server ring, then the server->client ring
+    private static final int MAGIC_OFFSET = 0;
+    private static final int STATE_OFFSET = 8;
+    private static final int HEADER_SIZE = 64;
+    private static final int RING_HEAD = 0;    // Consumer position, own cache line
+    private static final int RING_TAIL = 64;   // Producer position, own cache line
+    private static final int RING_DATA = 128;
+    private static final int RING_SIZE = RING_DATA + RING_CAPACITY;
+    private static final int FILE_SIZE = HEADER_SIZE + 2 * RING_SIZE;
+    private static final int WRAP = -1;        // Frame length marking a jump to the ring start
+
+    // State flag bits
+    private static final int CLIENT_READY = 1;
+    private static final int SERVER_ACCEPTED = 1 << 1;
+    private static final int CLIENT_CLOSED = 1 << 2;
+    private static final int SERVER_CLOSED = 1 << 3;
+
+    private static final String FILE_PREFIX = "conn-";
+    private static final String FILE_SUFFIX = ".ring";
+    private static final long MAX_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static final VarHandle LONGS =
+            MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+    private static final VarHandle INTS =
+            MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+    private final Path file;
+    private final MappedByteBuffer buffer;
+    private final boolean serverSide;
+    private final int inRing;
+    private final int outRing;
+    private long readPosition = 0;   // Consumer side of inRing
+    private long writePosition = 0;  // Producer side of outRing
+    private long cachedHead = 0;     // Last consumer position seen on outRing
+    private int readTimeoutMs = 0;
+    private volatile boolean closed = false;
+
+    private ShmConnection(Path file, MappedByteBuffer buffer, boolean serverSide) {
+        this.file = file;
+        this.buffer = buffer;
+        this.serverSide = serverSide;
+        int clientToServer = HEADER_SIZE;
+        int serverToClient = HEADER_SIZE + RING_SIZE;
+        this.inRing = serverSide ? clientToServer : serverToClient;
+        this.outRing = serverSide ? serverToClient : clientToServer;
+    }
+
+    /**
+     * @param base Parent directory, or null for /dev/shm (falling back to the temp directory)
+     * @return Directory where a server on the given port accepts shared-memory clients
+     */
+    static Path serverDirectory(String base, int port) {
+        Path parent;
+        if (base != null) {
+            parent = Paths.get(base);
+        } else {
+            Path devShm = Paths.get("/dev/shm");
+            parent = Files.isDirectory(devShm) && Files.isWritable(devShm)
+                    ? devShm
+                    : Paths.get(System.getProperty("java.io.tmpdir"));
+        }
+        return parent.resolve("pacman-" + port);
+    }
+
+    /**
+     * Client side: creates a connection file and waits for the server to accept it
+     */
+    static ShmConnection connect(Path directory, int timeoutMs) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            throw new IOException("No shared-memory server at " + directory);
+        }
+        String name = FILE_PREFIX + UUID.randomUUID();
+        Path staging = directory.resolve(name + ".tmp");
+        Path file = directory.resolve(name + FILE_SUFFIX);
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(staging,
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        }
+        buffer.putInt(MAGIC_OFFSET, MAGIC);
+        INTS.setRelease(buffer, STATE_OFFSET, CLIENT_READY);
+        Files.move(staging, file, StandardCopyOption.ATOMIC_MOVE); // Only complete files become visible
+
+        ShmConnection connection = new ShmConnection(file, buffer, false);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        while (((int) INTS.getAcquire(buffer, STATE_OFFSET) & SERVER_ACCEPTED) == 0) {
+            if (System.nanoTime() > deadline) {
+                Files.deleteIfExists(file);
+                throw new SocketTimeoutException("Shared-memory server did not accept");
+            }
+            LockSupport.parkNanos(MAX_PARK_NANOS);
+        }
+        return connection;
+    }
+
+    /**
+     * Server side: creates the directory and removes files left by an earlier run
+     */
+    static void prepareDirectory(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        for (Path stale : pendingFiles(directory)) {
+            Files.deleteIfExists(stale);
+        }
+    }
+
+    /**
+     * @return Connection files currently in the directory
+     */
+    static List<Path> pendingFiles(Path directory) throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, FILE_PREFIX + "*" + FILE_SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        return files;
+    }
+
+    /**
+     * Server side: maps a client's file and marks it accepted
+     * @return Connection, or null if the file is not a fresh client request
+     */
+    static ShmConnection accept(Path file) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < FILE_SIZE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, FILE_SIZE);
+        }
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC) return null;
+        int state = (int) INTS.getAndBitwiseOr(buffer, STATE_OFFSET, SERVER_ACCEPTED);
+        if ((state & CLIENT_READY) == 0 || (state & SERVER_ACCEPTED) != 0) return null;
+        return new ShmConnection(file, buffer, true);
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        int idle = 0;
+        long deadline = 0;
+        while (true) {
+            long tail = (long) LONGS.getAcquire(buffer, inRing + RING_TAIL);
+            if (readPosition == tail) {
+                if (closed) throw new SocketException("Socket closed");
+                if (peerClosed()) return null; // Closed and drained
+                if (readTimeoutMs > 0) {
+                    if (deadline == 0) {
+                        deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(readTimeoutMs);
+                    } else if (System.nanoTime() > deadline) {
+                        throw new SocketTimeoutException("Read timed out");
+                    }
+                }
+                idle = backOff(idle);
+                continue;
+            }
+
+            int offset = (int) (readPosition & (RING_CAPACITY - 1));
+            int length = buffer.getInt(inRing + RING_DATA + offset);
+            if (length == WRAP) {
+                readPosition += RING_CAPACITY - offset;
+                continue;
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(inRing + RING_DATA + offset + Integer.BYTES, bytes);
+            readPosition += frameSize(length);
+            LONGS.setRelease(buffer, inRing + RING_HEAD, readPosition);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Copies the line into the ring and publishes it at once; blocks while the ring is full
+     */
+    @Override
+    public void writeLine(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        int frame = frameSize(bytes.length);
+        if (frame > RING_CAPACITY / 2) {
+            throw new IOException("Line of " + bytes.length + " bytes does not fit the ring");
+        }
+        int offset = (int) (writePosition & (RING_CAPACITY - 1));
+        int toEnd = RING_CAPACITY - offset;
+        long needed = (frame > toEnd) ? toEnd + frame : frame;
+
+        int idle = 0;
+        while (writePosition + needed - cachedHead > RING_CAPACITY) {
+            cachedHead = (long) LONGS.getAcquire(buffer, outRing + RING_HEAD);
+            if (writePosition + needed - cachedHead <= RING_CAPACITY) break;
+            if (closed || peerClosed()) throw new SocketException("Connection closed by peer");
+            idle = backOff(idle);
+        }
+
+        if (frame > toEnd) {
+            buffer.putInt(outRing + RING_DATA + offset, WRAP);
+            writePosition += toEnd;
+            offset = 0;
+        }
+        buffer.putInt(outRing + RING_DATA + offset, bytes.length);
+        buffer.put(outRing + RING_DATA + offset + Integer.BYTES, bytes);
+        writePosition += frame;
+        LONGS.setRelease(buffer, outRing + RING_TAIL, writePosition);
+    }
+
+    @Override
+    public void flush() {
+        // Every line is published as soon as it is written
+    }
+
+    @Override
+    public void setReadTimeout(int timeoutMs) {
+        this.readTimeoutMs = timeoutMs;
+    }
+
+    @Override
+    public boolean isClosed() {
+        return closed || peerClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+        INTS.getAndBitwiseOr(buffer, STATE_OFFSET, serverSide ? SERVER_CLOSED : CLIENT_CLOSED);
+        if (serverSide) {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private boolean peerClosed() {
+        int state = (int) INTS.getAcquire(buffer, STATE_OFFSET);
+        return (state & (serverSide ? CLIENT_CLOSED : SERVER_CLOSED)) != 0;
+    }
+
+    /**
+     * Length prefix plus payload, rounded up to 8 bytes so prefixes stay aligned
+     */
+    private static int frameSize(int length) {
+        return (Integer.BYTES + length + 7) & ~7;
+    }
+
+    /**
+     * Spin, then yield, then park up to MAX_PARK_NANOS
+     * @return Next idle count
+     */
+    private static int backOff(int idle) {
+        if (idle < 100) {
+            Thread.onSpinWait();
+        } else if (idle < 200) {
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(Math.min(MAX_PARK_NANOS, 1_000L << Math.min(idle - 200, 10)));
+        }
+        return idle + 1;
+    }
+
+    @Override
+    public String toString() {
+        return "shm " + file.getFileName();
+    }
+}
@@ -0,0 +1,62 @@
+package network;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * {@link Connection} over a TCP socket with buffered line I/O
+ */
+class SocketConnection implements Connection {
+    private final Socket socket;
+    private final BufferedReader in;
+    private final Writer out;
+
+    SocketConnection(Socket socket) throws IOException {
+        this.socket = socket;
+        this.in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+        this.out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream()));
+    }
+
+    static SocketConnection connect(String address, int port, int timeoutMs) throws IOException {
+        Socket socket = new Socket();
+        socket.connect(new InetSocketAddress(address, port), timeoutMs);
+        return new SocketConnection(socket);
+    }
+
+    @Override
+    public String readLine() throws IOException {
+        return in.readLine();
+    }
+
+    @Override
+    public void writeLine(String line) throws IOException {
+        out.write(line);
+        out.write('\n');
+    }
+
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void setReadTimeout(int timeoutMs) throws IOException {
+        socket.setSoTimeout(timeoutMs);
+    }
+
+    @Override
+    public boolean isClosed() {
+        return socket.isClosed();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+
+    @Override
+    public String toString() {
+        return "tcp " + socket.getRemoteSocketAddress();
+    }
+}
@@ -0,0 +1,66 @@
+package network;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Thread factories and executors for connection loops.
+ * Platform threads use Java 17 APIs only; virtual threads are looked up
+ * reflectively, so the project still compiles and runs on Java 17 as long as
+ * virtual threads are not requested.
+ */
+public final class Threads {
+    private Threads() {}
+
+    /**
+     * @return true if the running JVM supports virtual threads (Java 21+)
+     */
+    public static boolean virtualAvailable() {
+        try {
+            Thread.class.getMethod("ofVirtual");
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    /**
+     * @param prefix Thread name prefix, numbered from 0
+     * @param virtual true for virtual threads
+     * @throws UnsupportedOperationException if virtual threads are requested before Java 21
+     */
+    public static ThreadFactory factory(String prefix, boolean virtual) {
+        if (virtual) {
+            try {
+                Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 0L);
+                return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return task -> new Thread(task, prefix + count.getAndIncrement());
+    }
+
+    /**
+     * Starts one thread per task: a cached pool for platform threads, or a
+     * thread-per-task executor for virtual threads (which must not be pooled)
+     */
+    public static ExecutorService executor(String prefix, boolean virtual) {
+        ThreadFactory factory = factory(prefix, virtual);
+        if (!virtual) {
+            return Executors.newCachedThreadPool(factory);
+        }
+        try {
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException e) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later", e);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read-only copy of the game state at one server tick.
+ * Taken under the state lock, then encoded for every client in parallel
+ * without further locking; nothing in it changes after construction.
+ * Each client gets the other players plus only the food eaten since the
+ * last payload it was sent.
+ */
+final class TickSnapshot {
+    private final String[] playerIds;
+    private final String[] playerEntries;
+    private final FoodJournal.View foods;
+    private final long serverTime;
+
+    /**
+     * Caller holds the server state lock
+     * @param oldestSentSeq Lowest food sequence any recipient was last sent
+     */
+    TickSnapshot(PlayerTable players, FoodJournal foodJournal, long oldestSentSeq) {
+        List<String> ids = new ArrayList<>();
+        this.playerEntries = players.encodeEntries(ids);
+        this.playerIds = ids.toArray(new String[0]);
+        this.foods = foodJournal.view(oldestSentSeq);
+        this.serverTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @return Food sequence the encoded payloads bring a client up to
+     */
+    long sequence() {
+        return foods.sequence();
+    }
+
+    /**
+     * Builds one client's payload: players#foods#seq#serverMillis#epoch
+     * @param playerId Recipient, left out of the players section
+     * @param lastSentSeq Food sequence of the recipient's previous payload
+     */
+    String encodeFor(String playerId, long lastSentSeq) {
+        StringBuilder payload = new StringBuilder(64 * playerEntries.length + 64);
+        boolean first = true;
+        for (int i = 0; i < playerEntries.length; i++) {
+            if (playerIds[i].equals(playerId)) continue;
+            if (!first) payload.append(Protocol.ENTRY_SEPARATOR);
+            first = false;
+            payload.append(playerEntries[i]);
+        }
+        payload.append(Protocol.SECTION_SEPARATOR).append(foods.encodeSince(lastSentSeq))
+                .append(Protocol.SECTION_SEPARATOR).append(foods.sequence())
+                .append(Protocol.SECTION_SEPARATOR).append(serverTime)
+                .append(Protocol.SECTION_SEPARATOR).append(foods.epoch());
+        return payload.toString();
+    }
+}
@@ -0,0 +1,169 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hashed timing wheel driving all per-connection deadlines from one thread.
+ * Scheduling and cancelling are O(1); each tick only visits the entries that
+ * hashed into the current bucket. Callbacks run on the wheel thread and must
+ * not block.
+ */
+class TimingWheel {
+    private final long tickMs;
+    private final int mask;
+    private final Timeout[] buckets; // Sentinels of circular doubly linked lists
+    private final String name;
+    private final ReentrantLock lock = new ReentrantLock();
+    private long currentTick = 0;
+    private Thread worker;
+    private volatile boolean running = false;
+
+    /**
+     * Pending deadline in the wheel
+     */
+    final class Timeout {
+        private final Runnable task;
+        private long rounds;   // Full wheel turns left before firing
+        private Timeout prev;
+        private Timeout next;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Removes the deadline if it has not fired yet
+         * @return true if the timeout was pending
+         */
+        boolean cancel() {
+            lock.lock();
+            try {
+                if (prev == null) return false;
+                unlink(this);
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @param tickMs Resolution of the wheel in milliseconds
+     * @param wheelSize Number of buckets, rounded up to a power of two
+     * @param name Name of the wheel thread
+     */
+    TimingWheel(long tickMs, int wheelSize, String name) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickMs = tickMs;
+        this.mask = size - 1;
+        this.buckets = new Timeout[size];
+        this.name = name;
+        for (int i = 0; i < size; i++) {
+            Timeout sentinel = new Timeout(null);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            buckets[i] = sentinel;
+        }
+    }
+
+    /**
+     * Starts the wheel thread
+     */
+    void start() {
+        running = true;
+        worker = new Thread(this::run, name);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    /**
+     * Stops the wheel; pending timeouts are discarded
+     */
+    void stop() {
+        running = false;
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+
+    /**
+     * Schedules a task to run once after the delay
+     * @param delayMs Delay in milliseconds, rounded up to the wheel resolution
+     */
+    Timeout schedule(long delayMs, Runnable task) {
+        lock.lock();
+        try {
+            long ticks = Math.max(1, (delayMs + tickMs - 1) / tickMs);
+            Timeout timeout = new Timeout(task);
+            timeout.rounds = (ticks - 1) / buckets.length;
+            Timeout bucket = buckets[(int) ((currentTick + ticks) & mask)];
+
+            // Append before the sentinel
+            timeout.prev = bucket.prev;
+            timeout.next = bucket;
+            bucket.prev.next = timeout;
+            bucket.prev = timeout;
+            return timeout;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void run() {
+        long nextTick = System.currentTimeMillis() + tickMs;
+        List<Runnable> due = new ArrayList<>();
+        while (running) {
+            long sleep = nextTick - System.currentTimeMillis();
+            if (sleep > 0) {
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException e) {
+                    break;
+                }
+            }
+            nextTick += tickMs;
+            collectDue(due);
+            for (Runnable task : due) {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Timer task failed: " + e.getMessage());
+                }
+            }
+            due.clear();
+        }
+    }
+
+    /**
+     * Advances one tick and detaches the timeouts that are due
+     */
+    private void collectDue(List<Runnable> due) {
+        lock.lock();
+        try {
+            currentTick++;
+            Timeout bucket = buckets[(int) (currentTick & mask)];
+            Timeout timeout = bucket.next;
+            while (timeout != bucket) {
+                Timeout next = timeout.next;
+                if (timeout.rounds == 0) {
+                    unlink(timeout);
+                    due.add(timeout.task);
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void unlink(Timeout timeout) {
+        timeout.prev.next = timeout.next;
+        timeout.next.prev = timeout.prev;
+        timeout.prev = null;
+        timeout.next = null;
+    }
+}
@@ -0,0 +1,51 @@
+package network;
+
+/**
+ * Token bucket rate limiter. Tokens refill continuously at a fixed rate up to
+ * the burst capacity; a request is allowed only if enough tokens are left.
+ * Not thread-safe: each bucket belongs to one reader thread.
+ */
+final class TokenBucket {
+    private final double ratePerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+
+    /**
+     * @param perSecond Sustained rate
+     * @param burst Largest amount allowed at once after an idle period
+     */
+    TokenBucket(double perSecond, double burst) {
+        this.ratePerNano = perSecond / 1e9;
+        this.capacity = burst;
+        this.tokens = burst;
+    }
+
+    /**
+     * @return true if the tokens were available and have been taken
+     */
+    boolean tryTake(double amount) {
+        if (!available(amount)) return false;
+        tokens -= amount;
+        return true;
+    }
+
+    /**
+     * Checks without taking, so a request limited by several buckets only
+     * spends tokens once all of them allow it
+     * @return true if the tokens are available
+     */
+    boolean available(double amount) {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+        lastRefill = now;
+        return tokens >= amount;
+    }
+
+    /**
+     * Takes tokens after {@link #available(double)} allowed them
+     */
+    void take(double amount) {
+        tokens -= amount;
+    }
+}
@@ -2,6 +2,7 @@ package ui;
 
 import game.GameNetwork;
 import game.PacMan;
+import game.SpriteAtlas;
 import javax.swing.*;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
@@ -30,6 +31,14 @@ public class GameFrame extends JFrame {
         setVisible(true); // Display after full initialization
     }
 
+    /**
+     * Starts decoding and scaling sprites in the background so the first
+     * frame does not wait on image loading
+     */
+    public static void preloadAssets() {
+        SpriteAtlas.preload(TILE_SIZE);
+    }
+
     /**
      * Configures window properties and dimensions
      */
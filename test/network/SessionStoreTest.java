@@ -0,0 +1,54 @@
+package network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks that detached sessions expire once their grace period has passed,
+ * even when the timing wheel fires a tick early.
+ *
+ * Run from the repository root:
+ *   javac -d out src/network/*.java test/network/SessionStoreTest.java
+ *   java -cp out network.SessionStoreTest
+ */
+public class SessionStoreTest {
+    private static final long GRACE_MS = 300;
+    private static final long TICK_MS = 100;
+    private static final int SESSIONS = 10;
+
+    public static void main(String[] args) throws InterruptedException {
+        SessionStore store = new SessionStore(GRACE_MS);
+        TimingWheel timers = new TimingWheel(TICK_MS, 64, "test-timers");
+        timers.start();
+        AtomicInteger expired = new AtomicInteger();
+        List<SessionStore.Session> sessions = new ArrayList<>();
+        try {
+            for (int i = 0; i < SESSIONS; i++) {
+                Object owner = new Object();
+                SessionStore.Session session = store.create("player-" + i, owner);
+                sessions.add(session);
+                check(store.detach(session, owner, System.currentTimeMillis()), "detach " + i);
+                store.scheduleExpiry(timers, session, s -> expired.incrementAndGet());
+                Thread.sleep(TICK_MS / SESSIONS * 3); // Spread the detaches across tick boundaries
+            }
+
+            Thread.sleep(GRACE_MS + 3 * TICK_MS + TICK_MS / SESSIONS * 3 * SESSIONS);
+            check(expired.get() == SESSIONS, "expired " + expired.get() + " of " + SESSIONS);
+            check(store.all().isEmpty(), store.all().size() + " sessions left in the store");
+            for (SessionStore.Session session : sessions) {
+                check(store.resume(session.token, new Object(), System.currentTimeMillis()) == null,
+                        "expired session resumed: " + session.playerId);
+            }
+        } finally {
+            timers.stop();
+        }
+        System.out.println("SessionStoreTest passed");
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}